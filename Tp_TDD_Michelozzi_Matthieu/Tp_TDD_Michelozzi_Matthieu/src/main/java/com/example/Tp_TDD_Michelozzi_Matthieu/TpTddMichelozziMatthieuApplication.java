@@ -3,7 +3,7 @@ package com.example.Tp_TDD_Michelozzi_Matthieu;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
-@SpringBootApplication
+@SpringBootApplication(scanBasePackages = { "com.example.Tp_TDD_Michelozzi_Matthieu", "com.example.rental" })
 public class TpTddMichelozziMatthieuApplication {
 
 	public static void main(String[] args) {
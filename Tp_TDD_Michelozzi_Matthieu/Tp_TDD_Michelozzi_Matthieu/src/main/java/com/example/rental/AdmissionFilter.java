@@ -0,0 +1,167 @@
+package com.example.rental;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Admission control in front of the car endpoints. Mutating requests (POST) and reads have separate budgets, each made
+ * of a token bucket per client and a cap on the requests in progress. A request over budget gets a 429 at once,
+ * without reaching the controller, so a burst on one endpoint cannot queue up work for the whole server.
+ * Enabled with {@code rental.admission.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(name = "rental.admission.enabled", havingValue = "true")
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    private final Budget writes;
+    private final Budget reads;
+    private final String clientHeader;
+
+    public AdmissionFilter(@Value("${rental.admission.write.rate:50}") double writeRate,
+            @Value("${rental.admission.write.burst:100}") int writeBurst,
+            @Value("${rental.admission.write.max-concurrent:200}") int writeMaxConcurrent,
+            @Value("${rental.admission.read.rate:200}") double readRate,
+            @Value("${rental.admission.read.burst:400}") int readBurst,
+            @Value("${rental.admission.read.max-concurrent:400}") int readMaxConcurrent,
+            @Value("${rental.admission.client-header:}") String clientHeader,
+            @Value("${rental.admission.max-clients:100000}") int maxClients) {
+        this.writes = new Budget(writeRate, writeBurst, writeMaxConcurrent, maxClients);
+        this.reads = new Budget(readRate, readBurst, readMaxConcurrent, maxClients);
+        this.clientHeader = clientHeader;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // The reactive API has its own server, see ReactiveRentalServer
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !path.equals("/cars") && !path.startsWith("/cars/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Budget budget = isRead(request) ? reads : writes;
+        long waitNanos = budget.takeToken(client(request), System.nanoTime());
+        if (waitNanos > 0) {
+            reject(response, Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999)));
+            return;
+        }
+        if (!budget.inProgress.tryAcquire()) {
+            reject(response, 1);
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            // A streamed response is released once the stream is set up, not when it ends
+            budget.inProgress.release();
+        }
+    }
+
+    private static boolean isRead(HttpServletRequest request) {
+        String method = request.getMethod();
+        return "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method);
+    }
+
+    private String client(HttpServletRequest request) {
+        if (!clientHeader.isEmpty()) {
+            String client = request.getHeader(clientHeader);
+            if (client != null) {
+                return client;
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private static void reject(HttpServletResponse response, long retryAfterSeconds) {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+    }
+
+    /**
+     * Token buckets of the clients and cap on the requests in progress.
+     * <p>
+     * A bucket is a single number, the time at which it will be full again: taking a token pushes it one interval
+     * further, and is refused when that would go more than a burst ahead of now. A bucket full again is the same as
+     * no bucket, so those are dropped when there are too many clients. If that is not enough, other buckets are
+     * dropped too, which refills them, so that the number of clients stays bounded
+     */
+    private static class Budget {
+        private final long intervalNanos;
+        private final long burstNanos;
+        private final int maxClients;
+        private final Semaphore inProgress;
+        private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+        private final ReentrantLock sweepLock = new ReentrantLock();
+
+        Budget(double rate, int burst, int maxConcurrent, int maxClients) {
+            if (!(rate > 0) || rate > TimeUnit.SECONDS.toNanos(1)) {
+                throw new IllegalArgumentException("The rate must be above 0 and at most 1e9 per second, got " + rate);
+            }
+            if (burst < 1 || maxConcurrent < 1 || maxClients < 1) {
+                throw new IllegalArgumentException("The burst, max-concurrent and max-clients must be at least 1, got "
+                        + burst + ", " + maxConcurrent + " and " + maxClients);
+            }
+            this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+            this.burstNanos = intervalNanos * burst;
+            this.maxClients = maxClients;
+            this.inProgress = new Semaphore(maxConcurrent);
+        }
+
+        /**
+         * @return 0 if a token was taken, otherwise the nanoseconds until the next one
+         */
+        long takeToken(String client, long now) {
+            AtomicLong bucket = buckets.get(client);
+            if (bucket == null) {
+                sweep(now);
+                bucket = buckets.computeIfAbsent(client, c -> new AtomicLong(now));
+            }
+            while (true) {
+                long fullAt = bucket.get();
+                // Compared by difference, as nanoTime values may overflow
+                long next = (fullAt - now > 0 ? fullAt : now) + intervalNanos;
+                long wait = next - burstNanos - now;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (bucket.compareAndSet(fullAt, next)) {
+                    return 0;
+                }
+            }
+        }
+
+        private void sweep(long now) {
+            if (buckets.size() >= maxClients && sweepLock.tryLock()) {
+                try {
+                    buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+                    Iterator<AtomicLong> iterator = buckets.values().iterator();
+                    while (buckets.size() >= maxClients && iterator.hasNext()) {
+                        iterator.next();
+                        iterator.remove();
+                    }
+                } finally {
+                    sweepLock.unlock();
+                }
+            }
+        }
+    }
+}
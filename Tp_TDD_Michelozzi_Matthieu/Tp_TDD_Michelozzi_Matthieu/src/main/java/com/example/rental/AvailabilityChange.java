@@ -0,0 +1,34 @@
+package com.example.rental;
+
+/**
+ * A change of availability of one car, numbered in the order changes happened
+ */
+public class AvailabilityChange {
+    private final long sequence;
+    private final String registrationNumber;
+    private final boolean available;
+
+    public AvailabilityChange(long sequence, String registrationNumber, boolean available) {
+        this.sequence = sequence;
+        this.registrationNumber = registrationNumber;
+        this.available = available;
+    }
+
+    /**
+     * @return the position of the change in the feed, starting at 1
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public String getRegistrationNumber() {
+        return registrationNumber;
+    }
+
+    /**
+     * @return the availability of the car after the change
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+}
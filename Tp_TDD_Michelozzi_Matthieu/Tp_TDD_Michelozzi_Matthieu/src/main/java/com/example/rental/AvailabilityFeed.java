@@ -0,0 +1,276 @@
+package com.example.rental;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Publishes the availability changes of the fleet to subscribers, so clients do not have to poll it.
+ * <p>
+ * Every change gets a sequence number and is kept in a ring of the last changes, shared by all subscribers.
+ * A rental only records its change in the ring and wakes the dispatcher thread, whatever the number of
+ * subscribers. Each subscriber then pulls the changes after the last one it received, on a virtual thread of its
+ * own: successive changes of the same car are merged into the latest one, with the availability the car has when
+ * they are delivered. A subscriber that falls further behind than the ring, or with more cars pending than the
+ * buffer size, gets a reset instead. A slow subscriber never slows down rentals nor the other subscribers.
+ */
+@Component
+public class AvailabilityFeed implements CarRepositoryListener {
+
+    private final CarRepository carRepository;
+    private final int bufferSize;
+    private final int maxSubscribers;
+
+    private final AtomicReferenceArray<AvailabilityChange> history;
+    private final AtomicLong sequence = new AtomicLong();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    /** Set by a change until the dispatcher has scheduled the subscribers */
+    private final AtomicBoolean signalled = new AtomicBoolean();
+    private volatile boolean closed;
+    private Thread dispatcher;
+    private ExecutorService executor;
+
+    public AvailabilityFeed(CarRepository carRepository,
+            @Value("${rental.events.history-size:10000}") int historySize,
+            @Value("${rental.events.buffer-size:1000}") int bufferSize,
+            @Value("${rental.events.max-subscribers:10000}") int maxSubscribers) {
+        this.carRepository = carRepository;
+        this.history = new AtomicReferenceArray<>(historySize);
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+    }
+
+    @PostConstruct
+    public void start() {
+        executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("availability-feed-", 1).factory());
+        dispatcher = Thread.ofVirtual().name("availability-feed-dispatcher").start(this::dispatch);
+        carRepository.addListener(this);
+    }
+
+    @PreDestroy
+    public void close() {
+        carRepository.removeListener(this);
+        closed = true;
+        LockSupport.unpark(dispatcher);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Subscribe to the changes made from now on, or since a sequence number
+     *
+     * @param since the sequence of the last change already received, 0 for all the changes kept,
+     *              or null for new changes only
+     * @param subscriber the subscriber to notify
+     * @return the subscription, to cancel when the subscriber goes away
+     * @throws TooManySubscribersException if the maximum number of subscribers is reached
+     */
+    public Subscription subscribe(Long since, AvailabilitySubscriber subscriber) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new TooManySubscribersException();
+        }
+        long last = sequence.get();
+        Subscription subscription;
+        if (since == null) {
+            subscription = new Subscription(subscriber, last + 1);
+        } else if (since < 0 || since > last || since < last - history.length()) {
+            subscription = new Subscription(subscriber, -1);
+        } else {
+            subscription = new Subscription(subscriber, since + 1);
+        }
+        subscriptions.add(subscription);
+        subscription.schedule();
+        return subscription;
+    }
+
+    /**
+     * @return the sequence of the last change
+     */
+    public long getSequence() {
+        return sequence.get();
+    }
+
+    @Override
+    public void carsAdded(List<Car> cars) {
+        // Not an availability change
+    }
+
+    @Override
+    public void carUpdated(Car car) {
+        record(new AvailabilityChange(sequence.incrementAndGet(), car.getRegistrationNumber(), car.isAvailable()));
+        // Set after recording, so the dispatcher scheduling the subscribers for an earlier signal either sees this
+        // change or is signalled again
+        if (!signalled.get() && !signalled.getAndSet(true)) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    /**
+     * Keep a change in the history, unless a change recorded after it already took its slot
+     */
+    private void record(AvailabilityChange change) {
+        int slot = index(change.getSequence());
+        while (true) {
+            AvailabilityChange kept = history.get(slot);
+            if ((kept != null && kept.getSequence() > change.getSequence())
+                    || history.compareAndSet(slot, kept, change)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Schedules the subscribers behind the last change each time changes are signalled, off the renting threads
+     */
+    private void dispatch() {
+        while (!closed) {
+            if (!signalled.getAndSet(false)) {
+                LockSupport.park(this);
+                continue;
+            }
+            for (Subscription subscription : subscriptions) {
+                subscription.schedule();
+            }
+        }
+    }
+
+    private int index(long changeSequence) {
+        return (int) (changeSequence % history.length());
+    }
+
+    /**
+     * The position of one subscriber in the feed
+     */
+    public final class Subscription {
+        private final AvailabilitySubscriber subscriber;
+        /** Sequence of the next change to deliver, or -1 once the subscriber must be reset */
+        private volatile long next;
+        /** Set while a drain is scheduled or running, so the subscriber is called one batch at a time */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        private Subscription(AvailabilitySubscriber subscriber, long next) {
+            this.subscriber = subscriber;
+            this.next = next;
+        }
+
+        /**
+         * Stop notifying the subscriber
+         */
+        public void cancel() {
+            if (cancelled.compareAndSet(false, true)) {
+                subscriptions.remove(this);
+                subscriberCount.decrementAndGet();
+            }
+        }
+
+        private void schedule() {
+            if (hasWork() && scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    // The feed is closing
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        /**
+         * @return true if a reset or a recorded change awaits delivery
+         */
+        private boolean hasWork() {
+            long position = next;
+            if (cancelled.get()) {
+                return false;
+            }
+            if (position < 0) {
+                return true;
+            }
+            AvailabilityChange change = history.get(index(position));
+            return position <= sequence.get() && change != null && change.getSequence() >= position;
+        }
+
+        private void drain() {
+            while (true) {
+                try {
+                    deliver();
+                } catch (IOException | RuntimeException e) {
+                    cancel();
+                }
+                scheduled.set(false);
+                // A change signalled while delivering may have found the drain still scheduled
+                if (!hasWork() || !scheduled.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+
+        private void deliver() throws IOException {
+            if (cancelled.get()) {
+                return;
+            }
+            Map<String, AvailabilityChange> pending = new LinkedHashMap<>();
+            long position = next;
+            long last = sequence.get();
+            while (position >= 0 && position <= last) {
+                AvailabilityChange change = history.get(index(position));
+                if (change == null || change.getSequence() < position) {
+                    // Sequence taken but the change is not recorded yet: its signal will schedule this again
+                    break;
+                }
+                if (change.getSequence() > position || (pending.put(change.getRegistrationNumber(), change) == null
+                        && pending.size() > bufferSize)) {
+                    position = -1;
+                    break;
+                }
+                position++;
+            }
+            next = position;
+            if (position < 0) {
+                subscriber.onReset(sequence.get());
+                cancel();
+                return;
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+            List<AvailabilityChange> changes = new ArrayList<>(pending.size());
+            for (AvailabilityChange change : pending.values()) {
+                // Notifications of concurrent changes to a car may be recorded out of order, the car itself is not
+                Optional<Car> car = carRepository.findByRegistrationNumber(change.getRegistrationNumber());
+                changes.add(new AvailabilityChange(change.getSequence(), change.getRegistrationNumber(),
+                        car.map(Car::isAvailable).orElse(change.isAvailable())));
+            }
+            changes.sort(Comparator.comparingLong(AvailabilityChange::getSequence));
+            subscriber.onChanges(changes);
+        }
+    }
+
+    /**
+     * Exception for a subscription refused because the maximum number of subscribers is reached
+     */
+    public static class TooManySubscribersException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.rental;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Receives the changes of an {@link AvailabilityFeed}, one call at a time, on a feed thread
+ */
+public interface AvailabilitySubscriber {
+
+    /**
+     * Called with the changes pending since the previous call, in sequence order.
+     * Only the latest change of each car is kept while the subscriber is busy
+     * 
+     * @param changes the changes, never empty
+     * @throws IOException if the changes cannot be delivered, which cancels the subscription
+     */
+    void onChanges(List<AvailabilityChange> changes) throws IOException;
+
+    /**
+     * Called once when changes were lost, because the subscriber fell too far behind or resumed from a sequence
+     * no longer kept. No change follows: the fleet must be reloaded and a new subscription made from the sequence
+     * 
+     * @param sequence the sequence of the last change made before the reset
+     * @throws IOException if the reset cannot be delivered
+     */
+    void onReset(long sequence) throws IOException;
+}
@@ -1,9 +1,19 @@
 package com.example.rental;
 
+/**
+ * Immutable state of a car. A rent or a return replaces the car in {@link CarRepository}
+ * with a new instance, so a car read by a caller never changes under it
+ */
 public class Car {
-    private String registrationNumber;
-    private String model;
-    private boolean available;
+    private final String registrationNumber;
+    private final String model;
+    private final boolean available;
+
+    /**
+     * JSON of the fields above up to the availability, encoded by {@link CarListJsonConverter} on first use
+     * and handed over to the copies of this car
+     */
+    private volatile byte[] jsonPrefix;
 
     public Car(String registrationNumber, String model, boolean available) {
         this.registrationNumber = registrationNumber;
@@ -23,7 +33,24 @@ public class Car {
         return available;
     }
 
-    public void setAvailable(boolean available) {
-        this.available = available;
+    /**
+     * @param available the availability of the copy
+     * @return a copy of this car with the given availability
+     */
+    public Car withAvailable(boolean available) {
+        if (available == this.available) {
+            return this;
+        }
+        Car copy = new Car(registrationNumber, model, available);
+        copy.jsonPrefix = jsonPrefix;
+        return copy;
+    }
+
+    byte[] jsonPrefix() {
+        return jsonPrefix;
+    }
+
+    void jsonPrefix(byte[] jsonPrefix) {
+        this.jsonPrefix = jsonPrefix;
     }
 }
@@ -1,51 +1,270 @@
 package com.example.rental;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 @RestController
 @RequestMapping("/cars")
 public class CarController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final int MAX_PAGE_SIZE = 1000;
+    static final String NDJSON = "application/x-ndjson";
+    static final String CSV = "text/csv";
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    /**
+     * Distinguishes the versions of this run from those of a previous one, which start over from zero
+     */
+    private final String etagPrefix = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
     @Autowired
     private CarRentalService carRentalService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CarImporter carImporter;
+
+    @Autowired
+    private AvailabilityFeed availabilityFeed;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    /**
+     * List cars. Without any parameter the whole fleet is returned.
+     * With a limit, cars are returned in registration number order and the
+     * X-Next-Cursor header holds the cursor of the next page, if any.
+     * The response has a strong ETag, and a request whose If-None-Match matches it gets a 304 without any car read
+     * 
+     * @param limit the maximum number of cars to return
+     * @param after the cursor returned with the previous page
+     * @param model the model to keep, with an optional trailing '*' for a prefix
+     * @param available the availability to keep
+     * @param request the request, for the conditional headers
+     * @return the cars, or null if they did not change
+     */
     @GetMapping
-    public List<Car> getAllCars() {
-        return carRentalService.getAllCars();
+    public ResponseEntity<List<Car>> getAllCars(@RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) String model,
+            @RequestParam(required = false) Boolean available,
+            WebRequest request) {
+        if (request.checkNotModified(etag(model))) {
+            return null;
+        }
+        if (limit == null && after == null && model == null && available == null) {
+            return ResponseEntity.ok(carRentalService.getAllCars());
+        }
+        return page(model, available, after, limit);
     }
 
+    /**
+     * Export the fleet as newline-delimited JSON, one car per line in registration number order.
+     * Cars are written one at a time while the fleet is iterated, so memory does not grow with the fleet
+     * 
+     * @param model the model to keep, with an optional trailing '*' for a prefix
+     * @param available the availability to keep
+     * @return the streamed cars
+     */
+    @GetMapping(value = "/export", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportCars(@RequestParam(required = false) String model,
+            @RequestParam(required = false) Boolean available) {
+        Iterator<Car> cars = carRentalService.iterateCars(model, available);
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.setRootValueSeparator(null);
+                while (cars.hasNext()) {
+                    generator.writeObject(cars.next());
+                    generator.writeRaw('\n');
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
+    /**
+     * Stream the availability changes as server-sent events: an "availability" event per change, whose id is
+     * its sequence number, and a final "reset" event holding the current sequence if changes were lost.
+     * After a reset, reload the fleet and subscribe again from that sequence
+     * 
+     * @param since the sequence of the last change already received, 0 for all the changes kept
+     * @param lastEventId the id of the last event received, sent by browsers when they reconnect
+     * @return the event stream, or 503 if the maximum number of streams is open
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAvailabilityChanges(@RequestParam(required = false) Long since,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        // No timeout: the stream lasts until the client goes away, which the next send detects
+        SseEmitter emitter = new SseEmitter(0L);
+        AvailabilityFeed.Subscription subscription = availabilityFeed.subscribe(since != null ? since : lastEventId,
+                new SseAvailabilitySubscriber(emitter));
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(subscription::cancel);
+        emitter.onError(error -> subscription.cancel());
+        return emitter;
+    }
+
+    /**
+     * Rent a car. A retry sent with the same Idempotency-Key gets the result of the first call
+     * 
+     * @param registrationNumber the registration number of the car to rent
+     * @param idempotencyKey a key unique to this rental, kept by the client across retries
+     * @return true if the car was rented, false if it is unknown or already rented
+     */
     @PostMapping("/rent/{registrationNumber}")
-    public boolean rentCar(@PathVariable String registrationNumber) {
-        return carRentalService.rentCar(registrationNumber);
+    public boolean rentCar(@PathVariable String registrationNumber,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return once(idempotencyKey, "rent " + registrationNumber, () -> carRentalService.rentCar(registrationNumber));
     }
 
+    /**
+     * Return a car. A retry sent with the same Idempotency-Key is not applied again
+     * 
+     * @param registrationNumber the registration number of the car to return
+     * @param idempotencyKey a key unique to this return, kept by the client across retries
+     */
     @PostMapping("/return/{registrationNumber}")
-    public void returnCar(@PathVariable String registrationNumber) {
-        carRentalService.returnCar(registrationNumber);
+    public void returnCar(@PathVariable String registrationNumber,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        once(idempotencyKey, "return " + registrationNumber, () -> {
+            carRentalService.returnCar(registrationNumber);
+            return null;
+        });
+    }
+
+    /**
+     * Reserve a car for a time window, given as ISO-8601 instants (e.g. 2025-06-01T10:00:00Z)
+     * 
+     * @param registrationNumber the registration number of the car to reserve
+     * @param start the start of the window, included
+     * @param end the end of the window, excluded
+     * @return the reservation
+     */
+    @PostMapping("/reserve/{registrationNumber}")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Reservation reserveCar(@PathVariable String registrationNumber, @RequestParam Instant start,
+            @RequestParam Instant end) {
+        checkWindow(start, end);
+        return carRentalService.reserveCar(registrationNumber, start, end)
+                .orElseThrow(ReservationConflictException::new);
+    }
+
+    /**
+     * Cancel a reservation
+     * 
+     * @param id the id of the reservation
+     * @return true if the reservation was cancelled, false if there is no such reservation
+     */
+    @PostMapping("/reservations/cancel/{id}")
+    public boolean cancelReservation(@PathVariable long id) {
+        return carRentalService.cancelReservation(id);
+    }
+
+    /**
+     * List the cars with no reservation during a time window
+     * 
+     * @param model the model to keep, with an optional trailing '*' for a prefix
+     * @param start the start of the window, included
+     * @param end the end of the window, excluded
+     * @return the free cars
+     */
+    @GetMapping("/free")
+    public List<Car> getFreeCars(@RequestParam(required = false) String model, @RequestParam Instant start,
+            @RequestParam Instant end) {
+        checkWindow(start, end);
+        return carRentalService.getCarsFreeBetween(model, start, end);
+    }
+
+    /**
+     * Get the counts of the fleet, without visiting it
+     * 
+     * @return the fleet size, the available and rented cars, and the rented cars by model
+     */
+    @GetMapping("/stats")
+    public FleetStatistics getStatistics() {
+        return carRentalService.getStatistics();
+    }
+
+    /**
+     * Rent several cars in one call
+     * 
+     * @param registrationNumbers the registration numbers of the cars to rent
+     * @param allOrNothing true to give back the rented cars if any of them cannot be rented, which other clients
+     *                     may see rented meanwhile
+     * @return the outcome for each registration number
+     */
+    @PostMapping("/rent/batch")
+    public Map<String, RentalOutcome> rentCars(@RequestBody List<String> registrationNumbers,
+            @RequestParam(defaultValue = "false") boolean allOrNothing) {
+        return carRentalService.rentCars(registrationNumbers, allOrNothing);
+    }
+
+    /**
+     * Return several cars in one call
+     * 
+     * @param registrationNumbers the registration numbers of the cars to return
+     * @param allOrNothing true to rent again the returned cars if any of them cannot be returned, which other
+     *                     clients may see returned meanwhile
+     * @return the outcome for each registration number
+     */
+    @PostMapping("/return/batch")
+    public Map<String, RentalOutcome> returnCars(@RequestBody List<String> registrationNumbers,
+            @RequestParam(defaultValue = "false") boolean allOrNothing) {
+        return carRentalService.returnCars(registrationNumbers, allOrNothing);
     }
 
     /**
      * Add a new car
      * 
+     * A retry sent with the same Idempotency-Key gets the response of the first call, instead of a conflict with
+     * the car that call added
+     * 
      * @param car the car to add
+     * @param idempotencyKey a key unique to this addition, kept by the client across retries
      * @return true if the car was added, false if a car with the same registration number already exists
      */
     @PostMapping("/add")
     @ResponseStatus(HttpStatus.CREATED)
-    public boolean addCar(@RequestBody Car car) {
-        boolean added = carRentalService.addCar(car);
+    public boolean addCar(@RequestBody Car car,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        boolean added = once(idempotencyKey,
+                "add " + car.getRegistrationNumber() + " " + car.getModel() + " " + car.isAvailable(),
+                () -> carRentalService.addCar(car));
         if (!added) {
             throw new CarRegistrationNumberAlreadyExistsException();
         }
@@ -53,14 +272,132 @@ public class CarController {
     }
 
     /**
-     * Search cars by model
+     * Import cars from a CSV body "registrationNumber,model,available", read as a stream
+     * 
+     * @param body the CSV content
+     * @return the number of accepted, conflicting and rejected rows
+     * @throws IOException if the body cannot be read
+     */
+    @PostMapping(value = "/import", consumes = CSV)
+    public ImportResult importCsv(InputStream body) throws IOException {
+        return carImporter.importCsv(new InputStreamReader(body, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Import cars from a newline-delimited JSON body, read as a stream
+     * 
+     * @param body the NDJSON content
+     * @return the number of accepted, conflicting and rejected rows
+     * @throws IOException if the body cannot be read
+     */
+    @PostMapping(value = "/import", consumes = NDJSON)
+    public ImportResult importNdjson(InputStream body) throws IOException {
+        return carImporter.importNdjson(new InputStreamReader(body, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Search cars by model, ignoring case. Accepts the same paging, filter and conditional headers as GET /cars.
+     * The ETag only changes when a car of the searched model changes
      * 
-     * @param model the model to search for
-     * @return a list of cars with the specified model
+     * @param model the model to search for, or a prefix followed by '*' (e.g. "Tesla*")
+     * @param limit the maximum number of cars to return
+     * @param after the cursor returned with the previous page
+     * @param available the availability to keep
+     * @param request the request, for the conditional headers
+     * @return a list of cars with the specified model, or null if they did not change
      */
     @GetMapping("/search")
-    public List<Car> searchCarsByModel(@RequestParam String model) {
-        return carRentalService.getCarsByModel(model);
+    public ResponseEntity<List<Car>> searchCarsByModel(@RequestParam String model,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Boolean available,
+            WebRequest request) {
+        if (request.checkNotModified(etag(model))) {
+            return null;
+        }
+        if (limit == null && after == null && available == null) {
+            return ResponseEntity.ok(carRentalService.getCarsByModel(model));
+        }
+        return page(model, available, after, limit);
+    }
+
+    private ResponseEntity<List<Car>> page(String model, Boolean available, String after, Integer limit) {
+        if (limit != null && (limit < 1 || limit > MAX_PAGE_SIZE)) {
+            throw new InvalidPageRequestException();
+        }
+        CarPage page = carRentalService.getCarPage(model, available, decodeCursor(after),
+                limit == null ? Integer.MAX_VALUE : limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.hasMore()) {
+            response.header(NEXT_CURSOR_HEADER, encodeCursor(page.getLastRegistrationNumber()));
+        }
+        return response.body(page.getCars());
+    }
+
+    private <T> T once(String idempotencyKey, String request, Supplier<T> action) {
+        if (idempotencyKey == null) {
+            return action.get();
+        }
+        return idempotencyStore.execute(idempotencyKey, request, action);
+    }
+
+    private static void checkWindow(Instant start, Instant end) {
+        if (!end.isAfter(start)) {
+            throw new InvalidReservationException();
+        }
+    }
+
+    /**
+     * The version is read before the cars, so the tag never stands for more recent cars than those sent
+     */
+    private String etag(String model) {
+        return "\"" + etagPrefix + "-" + carRentalService.getVersion(model) + "\"";
+    }
+
+    static String encodeCursor(String registrationNumber) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(registrationNumber.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String decodeCursor(String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidPageRequestException();
+        }
+    }
+
+    /**
+     * Writes each batch of changes with a single flush
+     */
+    private static class SseAvailabilitySubscriber implements AvailabilitySubscriber {
+        private final SseEmitter emitter;
+
+        SseAvailabilitySubscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void onChanges(List<AvailabilityChange> changes) throws IOException {
+            Set<ResponseBodyEmitter.DataWithMediaType> events = new LinkedHashSet<>();
+            for (AvailabilityChange change : changes) {
+                events.addAll(SseEmitter.event()
+                        .id(Long.toString(change.getSequence()))
+                        .name("availability")
+                        .data(change, MediaType.APPLICATION_JSON)
+                        .build());
+            }
+            emitter.send(events);
+        }
+
+        @Override
+        public void onReset(long sequence) throws IOException {
+            emitter.send(SseEmitter.event().name("reset").data(sequence));
+            emitter.complete();
+        }
     }
 
     /**
@@ -78,4 +415,70 @@ public class CarController {
     public static class CarRegistrationNumberAlreadyExistsException extends RuntimeException {
         private static final long serialVersionUID = 1L;
     }
+
+    /**
+     * Exception handler for a car that cannot be reserved
+     */
+    @ExceptionHandler(ReservationConflictException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public void handleReservationConflictException() {
+        // The status is enough for the client
+    }
+
+    /**
+     * Exception for an unknown car, or a car already reserved during part of the window
+     */
+    public static class ReservationConflictException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Exception handler for a window ending before it starts
+     */
+    @ExceptionHandler(InvalidReservationException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public void handleInvalidReservationException() {
+        // The status is enough for the client
+    }
+
+    /**
+     * Exception for a window ending before it starts
+     */
+    public static class InvalidReservationException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Exception handler for an idempotency key already used for another request
+     */
+    @ExceptionHandler(IdempotencyStore.KeyReusedException.class)
+    @ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+    public void handleKeyReusedException() {
+        // The status is enough for the client
+    }
+
+    /**
+     * Exception handler for an event stream refused because too many are open
+     */
+    @ExceptionHandler(AvailabilityFeed.TooManySubscribersException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public void handleTooManySubscribersException() {
+        // The status is enough for the client
+    }
+
+    /**
+     * Exception handler for an invalid limit or cursor
+     */
+    @ExceptionHandler(InvalidPageRequestException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public void handleInvalidPageRequestException() {
+        // The status is enough for the client
+    }
+
+    /**
+     * Exception for an invalid limit or cursor
+     */
+    public static class InvalidPageRequestException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
 }
@@ -0,0 +1,104 @@
+package com.example.rental;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Imports cars from a CSV or NDJSON stream, line by line, inserting them in batches
+ */
+@Component
+public class CarImporter {
+
+    static final int BATCH_SIZE = 1000;
+    static final String CSV_HEADER = "registrationNumber,model,available";
+
+    @Autowired
+    private CarRentalService carRentalService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Import cars from CSV rows "registrationNumber,model,available". The header row is optional
+     * and fields cannot contain commas
+     * 
+     * @param reader the CSV content
+     * @return the import counts
+     * @throws IOException if the content cannot be read
+     */
+    public ImportResult importCsv(Reader reader) throws IOException {
+        return importLines(reader, this::parseCsv);
+    }
+
+    /**
+     * Import cars from newline-delimited JSON, one car object per line
+     * 
+     * @param reader the NDJSON content
+     * @return the import counts
+     * @throws IOException if the content cannot be read
+     */
+    public ImportResult importNdjson(Reader reader) throws IOException {
+        return importLines(reader, this::parseJson);
+    }
+
+    private ImportResult importLines(Reader reader, Function<String, Car> parser) throws IOException {
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        List<Car> batch = new ArrayList<>(BATCH_SIZE);
+        long parsed = 0;
+        long accepted = 0;
+        long rejected = 0;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.isBlank() || CSV_HEADER.equalsIgnoreCase(line.trim())) {
+                continue;
+            }
+            Car car = parser.apply(line);
+            if (car == null) {
+                rejected++;
+                continue;
+            }
+            batch.add(car);
+            parsed++;
+            if (batch.size() == BATCH_SIZE) {
+                accepted += carRentalService.addCars(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            accepted += carRentalService.addCars(batch);
+        }
+        return new ImportResult(accepted, parsed - accepted, rejected);
+    }
+
+    private Car parseCsv(String line) {
+        String[] fields = line.split(",", -1);
+        if (fields.length != 3) {
+            return null;
+        }
+        String registrationNumber = fields[0].trim();
+        String available = fields[2].trim();
+        if (registrationNumber.isEmpty() || !(available.equalsIgnoreCase("true") || available.equalsIgnoreCase("false"))) {
+            return null;
+        }
+        return new Car(registrationNumber, fields[1].trim(), Boolean.parseBoolean(available));
+    }
+
+    private Car parseJson(String line) {
+        try {
+            Car car = objectMapper.readValue(line, Car.class);
+            return car.getRegistrationNumber() == null || car.getRegistrationNumber().isEmpty() ? null : car;
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.rental;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import com.example.rental.CarRepository.Storage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes the lists of cars returned as JSON (GET /cars, searches) without Jackson's reflective serialization.
+ * The registration number and model of a car never change, so the JSON before its availability is encoded once,
+ * kept by the car and its copies, and each response only adds the availability. Cars are written straight to the
+ * response body.
+ * <p>
+ * That JSON is the start of what the application's ObjectMapper writes for the car, so the output is byte for byte
+ * Jackson's. Should the mapper not end a car with its availability, or indent, this converter steps aside.
+ * It also steps aside with the columnar storage, whose reads build new cars every time, so nothing encoded would
+ * be reused. Spring Boot puts it before Jackson's converter, which still reads and writes everything else
+ */
+@Component
+public class CarListJsonConverter extends AbstractGenericHttpMessageConverter<List<Car>> {
+
+    private static final byte[] TRUE = "true}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FALSE = "false}".getBytes(StandardCharsets.UTF_8);
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * True if the cars keep what is encoded, and the mapper writes the availability last, so the JSON before it
+     * can be kept, and no whitespace
+     */
+    private final boolean enabled;
+
+    public CarListJsonConverter(ObjectMapper objectMapper) {
+        this(objectMapper, Storage.OBJECTS);
+    }
+
+    /**
+     * @param objectMapper the mapper whose output to reproduce
+     * @param storage how the repository stores the cars
+     */
+    @Autowired
+    public CarListJsonConverter(ObjectMapper objectMapper,
+            @Value("${rental.repository.storage:OBJECTS}") Storage storage) {
+        super(MediaType.APPLICATION_JSON);
+        this.objectMapper = objectMapper;
+        this.enabled = storage == Storage.OBJECTS && writesAvailabilityLast(objectMapper);
+    }
+
+    /**
+     * Write cars as a JSON array
+     *
+     * @param cars the cars to write
+     * @param out the stream to write to, left open
+     * @throws IOException if the stream cannot be written
+     */
+    public void write(List<Car> cars, OutputStream out) throws IOException {
+        out.write('[');
+        for (int i = 0; i < cars.size(); i++) {
+            Car car = cars.get(i);
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write(jsonPrefix(car));
+            out.write(car.isAvailable() ? TRUE : FALSE);
+        }
+        out.write(']');
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        // Without the generic type the elements may not be cars
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (type == null) {
+            return false;
+        }
+        ResolvableType listType = ResolvableType.forType(type).as(List.class);
+        return enabled && listType != ResolvableType.NONE && Car.class.equals(listType.resolveGeneric(0))
+                && canWrite(mediaType);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return List.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected void writeInternal(List<Car> cars, Type type, HttpOutputMessage outputMessage) throws IOException {
+        write(cars, outputMessage.getBody());
+    }
+
+    @Override
+    public List<Car> read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Cars are only written by this converter", inputMessage);
+    }
+
+    @Override
+    protected List<Car> readInternal(Class<? extends List<Car>> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Cars are only written by this converter", inputMessage);
+    }
+
+    /**
+     * Concurrent first uses may both encode the car, with the same result
+     */
+    private byte[] jsonPrefix(Car car) throws IOException {
+        byte[] jsonPrefix = car.jsonPrefix();
+        if (jsonPrefix == null) {
+            byte[] json = objectMapper.writeValueAsBytes(new Car(car.getRegistrationNumber(), car.getModel(), true));
+            jsonPrefix = Arrays.copyOf(json, json.length - TRUE.length);
+            car.jsonPrefix(jsonPrefix);
+        }
+        return jsonPrefix;
+    }
+
+    /**
+     * @return true if the mapper writes a list of cars as an array of their JSON, each ending with the availability
+     */
+    private static boolean writesAvailabilityLast(ObjectMapper objectMapper) {
+        try {
+            String available = objectMapper.writeValueAsString(new Car("A", "B", true));
+            String rented = objectMapper.writeValueAsString(new Car("A", "B", false));
+            String list = objectMapper.writeValueAsString(List.of(new Car("A", "B", true), new Car("A", "B", false)));
+            if (!available.endsWith("true}")) {
+                return false;
+            }
+            String prefix = available.substring(0, available.length() - "true}".length());
+            return rented.equals(prefix + "false}") && list.equals("[" + available + "," + rented + "]");
+        } catch (JsonProcessingException e) {
+            return false;
+        }
+    }
+}
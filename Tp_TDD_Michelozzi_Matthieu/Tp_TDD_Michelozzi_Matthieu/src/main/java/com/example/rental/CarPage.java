@@ -0,0 +1,31 @@
+package com.example.rental;
+
+import java.util.List;
+
+/**
+ * A page of cars in registration number order
+ */
+public class CarPage {
+    private final List<Car> cars;
+    private final String lastRegistrationNumber;
+
+    public CarPage(List<Car> cars, String lastRegistrationNumber) {
+        this.cars = cars;
+        this.lastRegistrationNumber = lastRegistrationNumber;
+    }
+
+    public List<Car> getCars() {
+        return cars;
+    }
+
+    /**
+     * @return the registration number to continue after, or null if this is the last page
+     */
+    public String getLastRegistrationNumber() {
+        return lastRegistrationNumber;
+    }
+
+    public boolean hasMore() {
+        return lastRegistrationNumber != null;
+    }
+}
@@ -1,8 +1,12 @@
 package com.example.rental;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -10,55 +14,268 @@ import org.springframework.stereotype.Service;
 @Service
 public class CarRentalService {
 
+    private static final String PREFIX_WILDCARD = "*";
+
     @Autowired
     private CarRepository carRepository;
 
+    @Autowired
+    private ModelSearchCache modelSearchCache;
+
+    @Autowired
+    private ReservationBook reservationBook;
+
+    @Autowired
+    private RentalMetrics rentalMetrics = RentalMetrics.DISABLED;
+
     public List<Car> getAllCars() {
         return carRepository.getAllCars();
     }
 
+    /**
+     * Rent a car. The availability is switched with a single compare-and-set,
+     * so among concurrent callers renting the same car exactly one gets true
+     * 
+     * @param registrationNumber the registration number of the car to rent
+     * @return true if the car was rented by this call, false if it is unknown or already rented
+     */
     public boolean rentCar(String registrationNumber) {
-        Optional<Car> car = carRepository.findByRegistrationNumber(registrationNumber);
-        if (car.isPresent() && car.get().isAvailable()) {
-            car.get().setAvailable(false);
-            carRepository.updateCar(car.get());
-            return true;
-        }
-        return false;
+        long start = rentalMetrics.start();
+        RentalOutcome outcome = changeAvailability(registrationNumber, true, false);
+        rentalMetrics.recordRent(outcome, start);
+        return outcome == RentalOutcome.SUCCESS;
     }
 
+    /**
+     * Return a rented car. Returning a car that is already available changes nothing
+     * 
+     * @param registrationNumber the registration number of the car to return
+     */
     public void returnCar(String registrationNumber) {
+        long start = rentalMetrics.start();
+        RentalOutcome outcome = changeAvailability(registrationNumber, false, true);
+        rentalMetrics.recordReturn(outcome, start);
+    }
+
+    /**
+     * Rent several cars in one call. A registration number listed twice is only rented once.
+     * <p>
+     * All or nothing is a compensation, not a transaction: the cars are rented one after the other, and when one
+     * fails those already rented are given back one after the other. Meanwhile other clients see them rented, and
+     * may fail to rent them. Rolled back cars are not counted in the rental outcomes
+     * 
+     * @param registrationNumbers the registration numbers of the cars to rent
+     * @param allOrNothing true to give back every rented car if any of them cannot be rented
+     * @return the outcome for each registration number, in request order
+     */
+    public Map<String, RentalOutcome> rentCars(List<String> registrationNumbers, boolean allOrNothing) {
+        Map<String, RentalOutcome> outcomes = changeAvailability(registrationNumbers, true, false, allOrNothing);
+        for (RentalOutcome outcome : outcomes.values()) {
+            rentalMetrics.countRent(outcome);
+        }
+        return outcomes;
+    }
+
+    /**
+     * Return several cars in one call. A registration number listed twice is only returned once.
+     * All or nothing is a compensation, not a transaction, as for {@link #rentCars(List, boolean)}
+     * 
+     * @param registrationNumbers the registration numbers of the cars to return
+     * @param allOrNothing true to rent again every returned car if any of them cannot be returned
+     * @return the outcome for each registration number, in request order
+     */
+    public Map<String, RentalOutcome> returnCars(List<String> registrationNumbers, boolean allOrNothing) {
+        Map<String, RentalOutcome> outcomes = changeAvailability(registrationNumbers, false, true, allOrNothing);
+        for (RentalOutcome outcome : outcomes.values()) {
+            rentalMetrics.countReturn(outcome);
+        }
+        return outcomes;
+    }
+
+    private Map<String, RentalOutcome> changeAvailability(List<String> registrationNumbers, boolean expected,
+            boolean available, boolean allOrNothing) {
+        Map<String, RentalOutcome> outcomes = new LinkedHashMap<>();
+        boolean failed = false;
+        for (String registrationNumber : registrationNumbers) {
+            if (outcomes.containsKey(registrationNumber)) {
+                continue;
+            }
+            RentalOutcome outcome = changeAvailability(registrationNumber, expected, available);
+            outcomes.put(registrationNumber, outcome);
+            if (outcome != RentalOutcome.SUCCESS && allOrNothing) {
+                failed = true;
+                break;
+            }
+        }
+        if (failed) {
+            for (Map.Entry<String, RentalOutcome> entry : outcomes.entrySet()) {
+                if (entry.getValue() == RentalOutcome.SUCCESS) {
+                    changeAvailability(entry.getKey(), available, expected);
+                    entry.setValue(RentalOutcome.ROLLED_BACK);
+                }
+            }
+        }
+        return outcomes;
+    }
+
+    private RentalOutcome changeAvailability(String registrationNumber, boolean expected, boolean available) {
+        if (carRepository.compareAndSetAvailable(registrationNumber, expected, available)) {
+            return RentalOutcome.SUCCESS;
+        }
         Optional<Car> car = carRepository.findByRegistrationNumber(registrationNumber);
-        car.ifPresent(c -> {
-            c.setAvailable(true);
-            carRepository.updateCar(c);
-        });
+        return car.isPresent() ? RentalOutcome.CONFLICT : RentalOutcome.NOT_FOUND;
     }
 
     /**
-     * Add a new car to the repository if its registration number is unique
+     * Add a new car to the repository if its registration number is unique.
+     * The duplicate check and the insertion are a single step, so concurrent adds of a car cannot both succeed
      * 
      * @param car the car to add
      * @return true if the car was added, false if a car with the same registration number already exists
      */
     public boolean addCar(Car car) {
-        Optional<Car> existingCar = carRepository.findByRegistrationNumber(car.getRegistrationNumber());
-        if (existingCar.isPresent()) {
-            return false;
-        }
-        carRepository.addCar(car);
-        return true;
+        long start = rentalMetrics.start();
+        boolean added = carRepository.addCar(car);
+        rentalMetrics.recordAdd(added, start);
+        return added;
+    }
+
+    /**
+     * Add a batch of cars, skipping those whose registration number is already taken.
+     * The duplicate check and the insertion are a single step per car, so there is no extra lookup
+     * 
+     * @param cars the cars to add
+     * @return the number of cars added
+     */
+    public int addCars(List<Car> cars) {
+        return carRepository.addCars(cars);
     }
 
     /**
-     * Get all cars with a specific model
+     * Get all cars with a specific model, ignoring case.
+     * A trailing '*' searches for all models starting with the given prefix (e.g. "Tesla*").
+     * Results are cached until a car of a matching model is added, rented or returned
      * 
      * @param model the model to search for
-     * @return a list of cars with the specified model
+     * @return an immutable list of cars with the specified model
      */
     public List<Car> getCarsByModel(String model) {
-        return carRepository.getAllCars().stream()
-                .filter(car -> car.getModel().equals(model))
-                .collect(Collectors.toList());
+        long start = rentalMetrics.start();
+        List<Car> cars = findByModel(model);
+        rentalMetrics.recordSearch(start);
+        return cars;
+    }
+
+    /**
+     * Reserve a car for a time window. A reservation only excludes other reservations overlapping it,
+     * renting the car now does not depend on it
+     * 
+     * @param registrationNumber the registration number of the car to reserve
+     * @param start the start of the window, included
+     * @param end the end of the window, excluded, after the start
+     * @return the reservation, or empty if the car is unknown or already reserved during part of the window
+     */
+    public Optional<Reservation> reserveCar(String registrationNumber, Instant start, Instant end) {
+        if (carRepository.findByRegistrationNumber(registrationNumber).isEmpty()) {
+            return Optional.empty();
+        }
+        return reservationBook.reserve(registrationNumber, start, end);
+    }
+
+    /**
+     * @param id the id of the reservation
+     * @return true if the reservation was cancelled, false if there is no such reservation
+     */
+    public boolean cancelReservation(long id) {
+        return reservationBook.cancel(id);
+    }
+
+    /**
+     * Get the cars with no reservation overlapping a time window. Only the cars of the model are visited,
+     * each one in O(log n) of its own reservations
+     * 
+     * @param model the model ignoring case, with an optional trailing '*' for a prefix, or null for all models
+     * @param start the start of the window, included
+     * @param end the end of the window, excluded
+     * @return the free cars
+     */
+    public List<Car> getCarsFreeBetween(String model, Instant start, Instant end) {
+        List<Car> cars = model == null ? carRepository.getAllCars() : findByModel(model);
+        List<Car> free = new ArrayList<>();
+        for (Car car : cars) {
+            if (reservationBook.isFree(car.getRegistrationNumber(), start, end)) {
+                free.add(car);
+            }
+        }
+        return free;
+    }
+
+    private List<Car> findByModel(String model) {
+        if (isPrefix(model)) {
+            String prefix = stripWildcard(model);
+            return modelSearchCache.get(prefix, true, () -> carRepository.findByModelPrefix(prefix));
+        }
+        return modelSearchCache.get(model, false, () -> carRepository.findByModel(model));
+    }
+
+    /**
+     * Get a version of the cars matching a model, that increases whenever one of them is added, rented or returned.
+     * Read it before the cars themselves, so the version never claims more recent data than what was read
+     * 
+     * @param model the model ignoring case, with an optional trailing '*' for a prefix, or null for all models
+     * @return the version
+     */
+    public long getVersion(String model) {
+        if (isPrefix(model)) {
+            return carRepository.getModelVersion(stripWildcard(model), true);
+        }
+        return carRepository.getModelVersion(model, false);
+    }
+
+    /**
+     * Get the counts of the fleet, kept up to date by every add, rent and return rather than counted on demand
+     * 
+     * @return the fleet size, the available cars and the rented cars by model
+     */
+    public FleetStatistics getStatistics() {
+        return carRepository.getStatistics();
+    }
+
+    /**
+     * Get a page of cars in registration number order
+     * 
+     * @param model the model to search for ignoring case, with an optional trailing '*' for a prefix, or null for all models
+     * @param available the availability to keep, or null for all cars
+     * @param after the registration number to start after, or null to start from the beginning
+     * @param limit the maximum number of cars in the page
+     * @return the page of cars
+     */
+    public CarPage getCarPage(String model, Boolean available, String after, int limit) {
+        if (isPrefix(model)) {
+            return carRepository.findPage(after, limit, stripWildcard(model), true, available);
+        }
+        return carRepository.findPage(after, limit, model, false, available);
+    }
+
+    /**
+     * Lazily iterate over the cars in registration number order, for streaming exports
+     * 
+     * @param model the model to search for ignoring case, with an optional trailing '*' for a prefix, or null for all models
+     * @param available the availability to keep, or null for all cars
+     * @return an iterator over the matching cars
+     */
+    public Iterator<Car> iterateCars(String model, Boolean available) {
+        if (isPrefix(model)) {
+            return carRepository.iterateCars(null, stripWildcard(model), true, available);
+        }
+        return carRepository.iterateCars(null, model, false, available);
+    }
+
+    private static boolean isPrefix(String model) {
+        return model != null && model.endsWith(PREFIX_WILDCARD);
+    }
+
+    private static String stripWildcard(String model) {
+        return model.substring(0, model.length() - PREFIX_WILDCARD.length());
     }
 }
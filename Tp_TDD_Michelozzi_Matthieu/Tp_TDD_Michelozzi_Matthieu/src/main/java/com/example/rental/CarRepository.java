@@ -1,30 +1,607 @@
 package com.example.rental;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
+/**
+ * The fleet, split into shards by hash of the registration number. Each shard has its own indexes and versions,
+ * so lookups and writes only touch the shard of their car and writes to different shards never contend.
+ * Fleet-wide reads scan the shards in parallel on the fork-join pool, then merge their results in registration
+ * number order.
+ * <p>
+ * How the shards store the cars is chosen with {@code rental.repository.storage}, see {@link Storage}
+ */
 @Repository
 public class CarRepository {
-    private final List<Car> cars = new ArrayList<>();
 
+    public static final int DEFAULT_SHARDS = 16;
+
+    /**
+     * How the shards store the cars
+     */
+    public enum Storage {
+        /** A {@link Car} per car in concurrent maps: lock-free writes, and fleet listings shared until a write */
+        OBJECTS,
+        /**
+         * Registration numbers packed in a byte arena, models as ids of a shared dictionary and availability as
+         * bits: a fraction of the heap per car, but writes lock their shard and every read builds its cars
+         */
+        COLUMNAR
+    }
+
+    /**
+     * Below this fleet size the shards are scanned one after the other, as forking would cost more than it saves
+     */
+    static final int PARALLEL_SCAN_THRESHOLD = 8192;
+
+    static final Comparator<Car> BY_REGISTRATION_NUMBER = Comparator.comparing(Car::getRegistrationNumber);
+
+    private final FleetShard[] shards;
+    private final Storage storage;
+
+    private final List<CarRepositoryListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Cars restored from disk and not yet loaded in the maps above, or null once everything is loaded
+     */
+    private volatile MappedFleetSnapshot snapshot;
+    private final ReentrantLock materializeLock = new ReentrantLock();
+
+    /**
+     * Last published list of all cars, shared by readers until the next write
+     */
+    private volatile FleetView fleetView = new FleetView(-1, List.of());
+    /** Held while the list of all cars is rebuilt, so one reader rebuilds it and the others wait for its result */
+    private final ReentrantLock fleetViewLock = new ReentrantLock();
+
+    public CarRepository() {
+        this(DEFAULT_SHARDS);
+    }
+
+    public CarRepository(int shardCount) {
+        this(shardCount, Storage.OBJECTS);
+    }
+
+    /**
+     * @param shardCount the number of shards, more than the cores writing concurrently to keep contention low
+     * @param storage how the shards store the cars
+     */
+    @Autowired
+    public CarRepository(@Value("${rental.repository.shards:16}") int shardCount,
+            @Value("${rental.repository.storage:OBJECTS}") Storage storage) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("At least one shard is needed, got " + shardCount);
+        }
+        this.storage = storage;
+        shards = new FleetShard[shardCount];
+        ModelDictionary models = new ModelDictionary();
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = storage == Storage.COLUMNAR ? new ColumnarFleetShard(models) : new ObjectFleetShard();
+        }
+    }
+
+    /**
+     * Get all cars in registration number order. The list is immutable and shared by all readers
+     * until the next write, so repeated reads cost nothing and never block writers.
+     * <p>
+     * The list is rebuilt lazily rather than by the writes: after a write, the first reader scans and sorts every
+     * shard, in O(n log n), while the other readers wait for its list. It includes every write completed before
+     * the call, but it is not a point-in-time snapshot of the fleet: the shards are scanned one after the other
+     * while writes go on, so a write made during the scan may show up while an earlier one to another car does
+     * not, and a batch may show up in part. Each car is listed once, in one of the states it had during the scan.
+     * With the columnar storage the list is built for each call instead, not to keep every car on the heap
+     * 
+     * @return an immutable list of the cars
+     */
     public List<Car> getAllCars() {
-        return cars;
+        materialize();
+        if (storage == Storage.COLUMNAR) {
+            return Collections.unmodifiableList(scanShards(null, false));
+        }
+        FleetView view = fleetView;
+        long current = getVersion();
+        if (view.version >= current) {
+            return view.cars;
+        }
+        fleetViewLock.lock();
+        try {
+            // Built by another reader meanwhile, after the writes this call must see
+            view = fleetView;
+            if (view.version < current) {
+                long version = getVersion();
+                view = new FleetView(version, Collections.unmodifiableList(scanShards(null, false)));
+                fleetView = view;
+            }
+        } finally {
+            fleetViewLock.unlock();
+        }
+        return view.cars;
+    }
+
+    /**
+     * @return a number incremented after every add or update, to be read before the cars it stands for
+     */
+    public long getVersion() {
+        // Each write increments the version of one shard, so the sum grows by one per write
+        long sum = 0;
+        for (FleetShard shard : shards) {
+            sum += shard.version.get();
+        }
+        return sum;
+    }
+
+    /**
+     * Get a number that increases after every add or update of a car with a model
+     * 
+     * @param model the model ignoring case, or the beginning of the model name
+     * @param modelPrefix true if model is a prefix rather than a full model name
+     * @return the version, to be read before the cars it stands for
+     */
+    public long getModelVersion(String model, boolean modelPrefix) {
+        if (model == null) {
+            return getVersion();
+        }
+        String from = FleetShard.normalizeModel(model);
+        // Model versions only grow and models are never removed, so their sum only grows too
+        long sum = 0;
+        for (FleetShard shard : shards) {
+            if (!modelPrefix) {
+                AtomicLong modelVersion = shard.modelVersions.get(from);
+                sum += modelVersion == null ? 0 : modelVersion.get();
+                continue;
+            }
+            for (AtomicLong modelVersion : shard.modelVersions.subMap(from, true, from + Character.MAX_VALUE, true)
+                    .values()) {
+                sum += modelVersion.get();
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return the number of cars in the fleet
+     */
+    public int size() {
+        materialize();
+        return loadedSize();
+    }
+
+    /**
+     * Count the available cars, visiting the whole fleet
+     * 
+     * @return the number of available cars
+     */
+    public int countAvailable() {
+        materialize();
+        return shardStream().mapToInt(FleetShard::countAvailable).sum();
+    }
+
+    /**
+     * Read the counters each shard updates on its writes, in time proportional to the shards and the models with
+     * rented cars rather than to the fleet. The available cars are read before the cars, which are counted first,
+     * so the counts never go below zero nor above the size even while writes are in progress
+     * 
+     * @return the counts of the fleet, with the rented cars by lower-cased model
+     */
+    public FleetStatistics getStatistics() {
+        materialize();
+        long available = 0;
+        long size = 0;
+        SortedMap<String, Long> rentedByModel = new TreeMap<>();
+        for (FleetShard shard : shards) {
+            available += shard.availableCars.get();
+            size += shard.countedCars.get();
+            for (Map.Entry<String, AtomicLong> rented : shard.rentedByModel.entrySet()) {
+                rentedByModel.merge(rented.getKey(), rented.getValue().get(), Long::sum);
+            }
+        }
+        rentedByModel.values().removeIf(count -> count == 0);
+        return new FleetStatistics(size, available, rentedByModel);
     }
 
     public Optional<Car> findByRegistrationNumber(String registrationNumber) {
-        return cars.stream()
-                .filter(car -> car.getRegistrationNumber().equals(registrationNumber))
-                .findFirst();
+        if (registrationNumber == null) {
+            return Optional.empty();
+        }
+        Car car = shardOf(registrationNumber).get(registrationNumber);
+        if (car == null && snapshot != null) {
+            car = loadFromSnapshot(registrationNumber);
+        }
+        return Optional.ofNullable(car);
+    }
+
+    /**
+     * Serve the cars of a snapshot without loading them: point lookups decode single cars on demand,
+     * and the first fleet-wide read loads the rest. Must be called before any car is added
+     * 
+     * @param snapshot the snapshot to read from
+     */
+    public void attachSnapshot(MappedFleetSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Load every car of the attached snapshot in memory, if not done yet
+     */
+    public void materialize() {
+        if (snapshot == null) {
+            return;
+        }
+        materializeLock.lock();
+        try {
+            MappedFleetSnapshot current = snapshot;
+            if (current == null) {
+                return;
+            }
+            Iterator<Car> snapshotCars = current.iterator();
+            while (snapshotCars.hasNext()) {
+                insert(snapshotCars.next());
+            }
+            snapshot = null;
+        } finally {
+            materializeLock.unlock();
+        }
+    }
+
+    /**
+     * Find the cars of a model, ignoring case
+     * 
+     * @param model the model to search for
+     * @return the cars with this model, in registration number order
+     */
+    public List<Car> findByModel(String model) {
+        if (model == null) {
+            return new ArrayList<>();
+        }
+        materialize();
+        return scanShards(model, false);
+    }
+
+    /**
+     * Find the cars whose model starts with a prefix, ignoring case
+     * 
+     * @param prefix the beginning of the model name
+     * @return the cars with a matching model, in registration number order
+     */
+    public List<Car> findByModelPrefix(String prefix) {
+        if (prefix == null) {
+            return new ArrayList<>();
+        }
+        materialize();
+        return scanShards(prefix, true);
+    }
+
+    /**
+     * Find a page of cars in registration number order, reading only the indexes matching the filters
+     * 
+     * @param after the registration number to start after, or null to start from the beginning
+     * @param limit the maximum number of cars in the page
+     * @param model the model to search for ignoring case, or null for all models
+     * @param modelPrefix true if model is a prefix rather than a full model name
+     * @param available the availability to keep, or null for all cars
+     * @return the page of cars
+     */
+    public CarPage findPage(String after, int limit, String model, boolean modelPrefix, Boolean available) {
+        Iterator<Car> matchingCars = iterateCars(after, model, modelPrefix, available);
+        List<Car> result = new ArrayList<>();
+        String lastRegistrationNumber = null;
+        while (matchingCars.hasNext()) {
+            Car car = matchingCars.next();
+            if (result.size() == limit) {
+                lastRegistrationNumber = result.get(limit - 1).getRegistrationNumber();
+                break;
+            }
+            result.add(car);
+        }
+        return new CarPage(result, lastRegistrationNumber);
+    }
+
+    /**
+     * Lazily iterate over the cars matching the filters in registration number order, without copying the fleet.
+     * Cars added or changed during the iteration may or may not be seen
+     * 
+     * @param after the registration number to start after, or null to start from the beginning
+     * @param model the model to search for ignoring case, or null for all models
+     * @param modelPrefix true if model is a prefix rather than a full model name
+     * @param available the availability to keep, or null for all cars
+     * @return an iterator over the matching cars
+     */
+    public Iterator<Car> iterateCars(String after, String model, boolean modelPrefix, Boolean available) {
+        materialize();
+        Iterator<String> registrations = registrationsFrom(after, model, modelPrefix);
+        return new Iterator<>() {
+            private Car next = advance();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Car next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Car car = next;
+                next = advance();
+                return car;
+            }
+
+            private Car advance() {
+                while (registrations.hasNext()) {
+                    String registrationNumber = registrations.next();
+                    Car car = shardOf(registrationNumber).get(registrationNumber);
+                    if (car != null && (available == null || car.isAvailable() == available)) {
+                        return car;
+                    }
+                }
+                return null;
+            }
+        };
     }
 
-    public void addCar(Car car) {
-        cars.add(car);
+    /**
+     * Add a car if its registration number is free. The check and the insertion are a single step, so among
+     * concurrent adds of the same registration number exactly one succeeds
+     * 
+     * @param car the car to add
+     * @return true if the car was added, false if its registration number is already taken
+     */
+    public boolean addCar(Car car) {
+        if (!isNew(car) || !insert(car)) {
+            return false;
+        }
+        incrementVersions(car);
+        for (CarRepositoryListener listener : listeners) {
+            listener.carsAdded(List.of(car));
+        }
+        return true;
     }
 
+    /**
+     * Add a batch of cars, skipping those whose registration number is already taken
+     * 
+     * @param batch the cars to add
+     * @return the number of cars added
+     */
+    public int addCars(Collection<Car> batch) {
+        List<Car> added = new ArrayList<>(batch.size());
+        for (Car car : batch) {
+            if (isNew(car) && insert(car)) {
+                added.add(car);
+            }
+        }
+        for (Car car : added) {
+            incrementVersions(car);
+        }
+        if (!added.isEmpty()) {
+            for (CarRepositoryListener listener : listeners) {
+                listener.carsAdded(added);
+            }
+        }
+        return added.size();
+    }
+
+    /**
+     * Replace a car, if it exists. A car whose model changes is no longer found by searches of its previous model
+     *
+     * @param car the car, with the registration number of the car to replace
+     */
     public void updateCar(Car car) {
-        cars.replaceAll(c -> c.getRegistrationNumber().equals(car.getRegistrationNumber()) ? car : c);
+        if (findByRegistrationNumber(car.getRegistrationNumber()).isEmpty()) {
+            return;
+        }
+        Car previous = shardOf(car.getRegistrationNumber()).replace(car);
+        if (previous == null) {
+            return;
+        }
+        if (!FleetShard.sameModel(previous, car)) {
+            incrementModelVersion(previous);
+        }
+        incrementVersions(car);
+        for (CarRepositoryListener listener : listeners) {
+            listener.carReplaced(previous, car);
+        }
+    }
+
+    /**
+     * Atomically replace a car by a copy with another availability, if it still has the expected one.
+     * Among concurrent callers making the same transition exactly one succeeds, without any lock
+     * with the object storage
+     * 
+     * @param registrationNumber the registration number of the car
+     * @param expected the availability the car must have
+     * @param available the new availability
+     * @return true if this call changed the car, false if it is unknown or does not have the expected availability
+     */
+    public boolean compareAndSetAvailable(String registrationNumber, boolean expected, boolean available) {
+        if (findByRegistrationNumber(registrationNumber).isEmpty()) {
+            return false;
+        }
+        Car updated = shardOf(registrationNumber).compareAndSetAvailable(registrationNumber, expected, available);
+        if (updated == null) {
+            return false;
+        }
+        incrementVersions(updated);
+        for (CarRepositoryListener listener : listeners) {
+            listener.carUpdated(updated);
+        }
+        return true;
+    }
+
+    /**
+     * Register a listener notified after each mutation
+     * 
+     * @param listener the listener to add
+     */
+    public void addListener(CarRepositoryListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param listener the listener to remove
+     */
+    public void removeListener(CarRepositoryListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Makes sure a car still only in the snapshot is seen as a duplicate
+     */
+    private boolean isNew(Car car) {
+        return snapshot == null || findByRegistrationNumber(car.getRegistrationNumber()).isEmpty();
+    }
+
+    private Car loadFromSnapshot(String registrationNumber) {
+        MappedFleetSnapshot current = snapshot;
+        Car car = current == null ? null : current.find(registrationNumber);
+        if (car != null) {
+            insert(car);
+        }
+        return shardOf(registrationNumber).get(registrationNumber);
+    }
+
+    private boolean insert(Car car) {
+        return shardOf(car.getRegistrationNumber()).insert(car);
+    }
+
+    /**
+     * Called once the change is visible, so a reader seeing the new version also sees the change
+     */
+    private void incrementVersions(Car car) {
+        incrementModelVersion(car);
+        shardOf(car.getRegistrationNumber()).version.incrementAndGet();
+    }
+
+    private void incrementModelVersion(Car car) {
+        if (car.getModel() != null) {
+            shardOf(car.getRegistrationNumber()).modelVersions
+                    .computeIfAbsent(FleetShard.normalizeModel(car.getModel()), m -> new AtomicLong())
+                    .incrementAndGet();
+        }
+    }
+
+    private FleetShard shardOf(String registrationNumber) {
+        int hash = registrationNumber.hashCode();
+        // Mixes the high bits in, as registration numbers often only differ by their last characters
+        return shards[Math.floorMod(hash ^ (hash >>> 16), shards.length)];
+    }
+
+    private int loadedSize() {
+        int size = 0;
+        for (FleetShard shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return the shards, as a parallel stream if the fleet is large enough to be worth it
+     */
+    private Stream<FleetShard> shardStream() {
+        Stream<FleetShard> stream = Arrays.stream(shards);
+        return shards.length > 1 && loadedSize() >= PARALLEL_SCAN_THRESHOLD ? stream.parallel() : stream;
+    }
+
+    /**
+     * Collect the matching cars of every shard, then sort them together. The part of each shard is mostly
+     * sorted already, so the sort mostly merges, and is itself split over the fork-join pool for large results
+     */
+    private List<Car> scanShards(String model, boolean modelPrefix) {
+        List<List<Car>> parts = shardStream().map(shard -> shard.collectCars(model, modelPrefix)).toList();
+        int size = 0;
+        for (List<Car> part : parts) {
+            size += part.size();
+        }
+        Car[] result = new Car[size];
+        int position = 0;
+        for (List<Car> part : parts) {
+            for (Car car : part) {
+                result[position++] = car;
+            }
+        }
+        Arrays.parallelSort(result, BY_REGISTRATION_NUMBER);
+        return new ArrayList<>(Arrays.asList(result));
+    }
+
+    private Iterator<String> registrationsFrom(String after, String model, boolean modelPrefix) {
+        List<Iterator<String>> iterators = new ArrayList<>();
+        for (FleetShard shard : shards) {
+            iterators.addAll(shard.registrations(after, model, modelPrefix));
+        }
+        return iterators.size() == 1 ? iterators.get(0) : new MergingIterator(iterators);
+    }
+
+    private static class FleetView {
+        private final long version;
+        private final List<Car> cars;
+
+        FleetView(long version, List<Car> cars) {
+            this.version = version;
+            this.cars = cars;
+        }
+    }
+
+    /**
+     * Merges several sorted iterators of registration numbers into one sorted iterator
+     */
+    private static class MergingIterator implements Iterator<String> {
+        private final PriorityQueue<Head> heads = new PriorityQueue<>(Comparator.comparing((Head head) -> head.value));
+
+        MergingIterator(List<Iterator<String>> iterators) {
+            for (Iterator<String> iterator : iterators) {
+                advance(iterator);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public String next() {
+            Head head = heads.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            advance(head.iterator);
+            return head.value;
+        }
+
+        private void advance(Iterator<String> iterator) {
+            if (iterator.hasNext()) {
+                heads.add(new Head(iterator.next(), iterator));
+            }
+        }
+
+        private static class Head {
+            private final String value;
+            private final Iterator<String> iterator;
+
+            Head(String value, Iterator<String> iterator) {
+                this.value = value;
+                this.iterator = iterator;
+            }
+        }
     }
 }
@@ -0,0 +1,33 @@
+package com.example.rental;
+
+import java.util.List;
+
+/**
+ * Notified by {@link CarRepository} after each mutation, on the thread that made it
+ */
+public interface CarRepositoryListener {
+
+    /**
+     * Called after cars were added
+     * 
+     * @param cars the cars actually added, duplicates excluded
+     */
+    void carsAdded(List<Car> cars);
+
+    /**
+     * Called after the availability of a car changed
+     * 
+     * @param car the updated car
+     */
+    void carUpdated(Car car);
+
+    /**
+     * Called after a car was replaced, which may have changed its model as well as its availability
+     *
+     * @param previous the car before the replacement
+     * @param car the updated car
+     */
+    default void carReplaced(Car previous, Car car) {
+        carUpdated(car);
+    }
+}
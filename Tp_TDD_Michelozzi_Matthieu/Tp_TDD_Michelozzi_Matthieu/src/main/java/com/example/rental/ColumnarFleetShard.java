@@ -0,0 +1,445 @@
+package com.example.rental;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+/**
+ * Shard storing its cars column by column rather than as objects, for fleets too large to keep a {@link Car},
+ * two strings and several map entries per car on the heap. Car ids are positions in the columns:
+ * <pre>
+ * arena[offsets[id] .. offsets[id + 1]]  registration number, UTF-8
+ * hashes[id]                             hash code of the registration number
+ * modelIds[id]                           model id in the dictionary shared by the shards
+ * availability bit id                    set if available
+ * </pre>
+ * An open-addressing table of ids finds a registration number, and an array of ids sorted by registration number,
+ * rebuilt lazily after adds, serves ordered reads. Cars only become {@link Car} objects when returned.
+ * <p>
+ * Writes take the shard lock. Reads do not lock: a car is published by the volatile size of the columns, and the
+ * columns are copied into larger ones when full, so a reader always sees complete arrays
+ */
+final class ColumnarFleetShard extends FleetShard {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final ModelDictionary models;
+
+    /** Guards the writes */
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Columns columns = new Columns(INITIAL_CAPACITY, INITIAL_CAPACITY * 8);
+
+    /** Guards the rebuilds of sortedIds */
+    private final ReentrantLock sortLock = new ReentrantLock();
+    private volatile int[] sortedIds = new int[0];
+
+    ColumnarFleetShard(ModelDictionary models) {
+        this.models = models;
+    }
+
+    @Override
+    Car get(String registrationNumber) {
+        Columns current = columns;
+        int id = current.find(registrationNumber);
+        return id < 0 ? null : current.car(id, models);
+    }
+
+    @Override
+    boolean insert(Car car) {
+        String registrationNumber = car.getRegistrationNumber();
+        lock.lock();
+        try {
+            Columns current = columns;
+            if (current.find(registrationNumber) >= 0) {
+                return false;
+            }
+            byte[] registration = registrationNumber.getBytes(StandardCharsets.UTF_8);
+            if (!current.fits(registration.length)) {
+                current = current.grow(registration.length);
+                columns = current;
+            }
+            current.append(registration, registrationNumber.hashCode(), models.idOf(car.getModel()),
+                    car.isAvailable());
+            count(null, car);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    Car replace(Car car) {
+        lock.lock();
+        try {
+            Columns current = columns;
+            int id = current.find(car.getRegistrationNumber());
+            if (id < 0) {
+                return null;
+            }
+            Car previous = current.car(id, models);
+            current.modelIds.set(id, models.idOf(car.getModel()));
+            current.setAvailable(id, car.isAvailable());
+            count(previous, car);
+            return previous;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    Car compareAndSetAvailable(String registrationNumber, boolean expected, boolean available) {
+        lock.lock();
+        try {
+            Columns current = columns;
+            int id = current.find(registrationNumber);
+            if (id < 0 || current.isAvailable(id) != expected) {
+                return null;
+            }
+            Car previous = current.car(id, models);
+            current.setAvailable(id, available);
+            Car updated = previous.withAvailable(available);
+            count(previous, updated);
+            return updated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    List<Car> collectCars(String model, boolean modelPrefix) {
+        int[] ids = sortedIds();
+        Columns current = columns;
+        BitSet matching = model == null ? null : models.matching(model, modelPrefix);
+        List<Car> result = new ArrayList<>();
+        for (int id : ids) {
+            if (current.hasModel(id, matching)) {
+                result.add(current.car(id, models));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    List<Iterator<String>> registrations(String after, String model, boolean modelPrefix) {
+        int[] ids = sortedIds();
+        Columns current = columns;
+        BitSet matching = model == null ? null : models.matching(model, modelPrefix);
+        int from = after == null ? 0 : current.firstAfter(ids, after.getBytes(StandardCharsets.UTF_8));
+        return List.of(new Iterator<>() {
+            private int position = skip(from);
+
+            @Override
+            public boolean hasNext() {
+                return position < ids.length;
+            }
+
+            @Override
+            public String next() {
+                if (position >= ids.length) {
+                    throw new NoSuchElementException();
+                }
+                String registrationNumber = current.registration(ids[position]);
+                position = skip(position + 1);
+                return registrationNumber;
+            }
+
+            private int skip(int position) {
+                while (position < ids.length && !current.hasModel(ids[position], matching)) {
+                    position++;
+                }
+                return position;
+            }
+        });
+    }
+
+    @Override
+    int countAvailable() {
+        return columns.countAvailable();
+    }
+
+    @Override
+    int size() {
+        return columns.size;
+    }
+
+    /**
+     * @return the ids of the cars in registration number order, sorting the cars added since the last call
+     *         and merging them with the ids already sorted
+     */
+    private int[] sortedIds() {
+        // Read before the columns, which then have at least as many cars
+        int[] sorted = sortedIds;
+        Columns current = columns;
+        if (sorted.length == current.size) {
+            return sorted;
+        }
+        sortLock.lock();
+        try {
+            sorted = sortedIds;
+            current = columns;
+            int size = current.size;
+            if (sorted.length == size) {
+                return sorted;
+            }
+            Columns byRegistration = current;
+            int[] added = IntStream.range(sorted.length, size).boxed()
+                    .sorted(byRegistration::compare)
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            int[] merged = new int[size];
+            int i = 0;
+            int j = 0;
+            for (int k = 0; k < size; k++) {
+                if (j == added.length || i < sorted.length && current.compare(sorted[i], added[j]) < 0) {
+                    merged[k] = sorted[i++];
+                } else {
+                    merged[k] = added[j++];
+                }
+            }
+            sortedIds = merged;
+            return merged;
+        } finally {
+            sortLock.unlock();
+        }
+    }
+
+    private static final class Columns {
+        private final byte[] arena;
+        private final int[] offsets;
+        private final int[] hashes;
+        private final AtomicIntegerArray modelIds;
+        private final AtomicLongArray availability;
+
+        /** Id + 1 of the car in each slot, 0 if empty, at most half full */
+        private final AtomicIntegerArray slots;
+
+        /** Only written under the lock, and only read by the writers */
+        private int arenaSize;
+
+        /** Written after the car it counts, so a reader seeing an id below the size sees its car */
+        private volatile int size;
+
+        Columns(int capacity, int arenaCapacity) {
+            arena = new byte[arenaCapacity];
+            offsets = new int[capacity + 1];
+            hashes = new int[capacity];
+            modelIds = new AtomicIntegerArray(capacity);
+            availability = new AtomicLongArray((capacity + 63) / 64);
+            slots = new AtomicIntegerArray(capacity * 2);
+        }
+
+        boolean fits(int registrationLength) {
+            return size < hashes.length && arenaSize + registrationLength <= arena.length;
+        }
+
+        /**
+         * @return columns with room for one more car of this registration length, holding a copy of these ones
+         */
+        Columns grow(int registrationLength) {
+            int capacity = size < hashes.length ? hashes.length : hashes.length * 2;
+            int arenaCapacity = Math.max(arena.length * 2, arenaSize + registrationLength);
+            Columns grown = new Columns(capacity, arenaCapacity);
+            int count = size;
+            System.arraycopy(arena, 0, grown.arena, 0, arenaSize);
+            System.arraycopy(offsets, 0, grown.offsets, 0, count + 1);
+            System.arraycopy(hashes, 0, grown.hashes, 0, count);
+            for (int id = 0; id < count; id++) {
+                grown.modelIds.set(id, modelIds.get(id));
+                grown.addSlot(id);
+            }
+            for (int word = 0; word < availability.length(); word++) {
+                grown.availability.set(word, availability.get(word));
+            }
+            grown.arenaSize = arenaSize;
+            grown.size = count;
+            return grown;
+        }
+
+        void append(byte[] registration, int hash, int modelId, boolean available) {
+            int id = size;
+            System.arraycopy(registration, 0, arena, arenaSize, registration.length);
+            arenaSize += registration.length;
+            offsets[id + 1] = arenaSize;
+            hashes[id] = hash;
+            modelIds.set(id, modelId);
+            setAvailable(id, available);
+            size = id + 1;
+            addSlot(id);
+        }
+
+        int find(String registrationNumber) {
+            int hash = registrationNumber.hashCode();
+            int mask = slots.length() - 1;
+            for (int slot = spread(hash) & mask;; slot = (slot + 1) & mask) {
+                int id = slots.get(slot) - 1;
+                if (id < 0) {
+                    return -1;
+                }
+                if (hashes[id] == hash && matches(id, registrationNumber)) {
+                    return id;
+                }
+            }
+        }
+
+        Car car(int id, ModelDictionary models) {
+            return new Car(registration(id), models.model(modelIds.get(id)), isAvailable(id));
+        }
+
+        String registration(int id) {
+            return new String(arena, offsets[id], offsets[id + 1] - offsets[id], StandardCharsets.UTF_8);
+        }
+
+        boolean hasModel(int id, BitSet matching) {
+            if (matching == null) {
+                return true;
+            }
+            int modelId = modelIds.get(id);
+            return modelId != ModelDictionary.NO_MODEL && matching.get(modelId);
+        }
+
+        boolean isAvailable(int id) {
+            return (availability.get(id >>> 6) & (1L << id)) != 0;
+        }
+
+        /**
+         * Only called under the lock, so the read and the write of the word are not interleaved with another write
+         */
+        void setAvailable(int id, boolean available) {
+            long word = availability.get(id >>> 6);
+            availability.set(id >>> 6, available ? word | (1L << id) : word & ~(1L << id));
+        }
+
+        int countAvailable() {
+            int count = size;
+            int available = 0;
+            for (int word = 0; word < count >>> 6; word++) {
+                available += Long.bitCount(availability.get(word));
+            }
+            if ((count & 63) != 0) {
+                // Ignores the bits of cars being added
+                available += Long.bitCount(availability.get(count >>> 6) & ((1L << count) - 1));
+            }
+            return available;
+        }
+
+        /**
+         * Compare the registration numbers of two cars in {@link String} order
+         */
+        int compare(int id, int other) {
+            return compareUtf8(arena, offsets[id], offsets[id + 1], arena, offsets[other], offsets[other + 1]);
+        }
+
+        /**
+         * @return the position of the first id whose registration number comes after this one
+         */
+        int firstAfter(int[] ids, byte[] registration) {
+            int low = 0;
+            int high = ids.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int id = ids[middle];
+                if (compareUtf8(arena, offsets[id], offsets[id + 1], registration, 0, registration.length) <= 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private void addSlot(int id) {
+            int mask = slots.length() - 1;
+            int slot = spread(hashes[id]) & mask;
+            while (slots.get(slot) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots.set(slot, id + 1);
+        }
+
+        private boolean matches(int id, String registrationNumber) {
+            int from = offsets[id];
+            int length = offsets[id + 1] - from;
+            if (length == registrationNumber.length()) {
+                // Plain ASCII, compared without encoding
+                int i = 0;
+                while (i < length && registrationNumber.charAt(i) < 0x80
+                        && arena[from + i] == registrationNumber.charAt(i)) {
+                    i++;
+                }
+                if (i == length) {
+                    return true;
+                }
+                if (registrationNumber.charAt(i) < 0x80) {
+                    return false;
+                }
+            }
+            byte[] registration = registrationNumber.getBytes(StandardCharsets.UTF_8);
+            return Arrays.equals(arena, from, from + length, registration, 0, registration.length);
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+
+        /**
+         * Compare two UTF-8 strings in the order of {@link String#compareTo}, that is by UTF-16 code unit,
+         * without decoding them
+         */
+        private static int compareUtf8(byte[] a, int aFrom, int aTo, byte[] b, int bFrom, int bTo) {
+            int i = aFrom;
+            int j = bFrom;
+            while (i < aTo && j < bTo) {
+                if (a[i] >= 0 && b[j] >= 0) {
+                    if (a[i] != b[j]) {
+                        return a[i] - b[j];
+                    }
+                    i++;
+                    j++;
+                    continue;
+                }
+                int codePoint = codePointAt(a, i);
+                int otherCodePoint = codePointAt(b, j);
+                if (codePoint != otherCodePoint) {
+                    if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT
+                            && otherCodePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                        return codePoint - otherCodePoint;
+                    }
+                    return firstCodeUnit(codePoint) - firstCodeUnit(otherCodePoint);
+                }
+                i += encodedLength(a[i]);
+                j += encodedLength(b[j]);
+            }
+            if (i < aTo) {
+                return 1;
+            }
+            return j < bTo ? -1 : 0;
+        }
+
+        private static int firstCodeUnit(int codePoint) {
+            return codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT ? codePoint : Character.highSurrogate(codePoint);
+        }
+
+        private static int encodedLength(byte lead) {
+            return lead >= 0 ? 1 : (lead & 0xE0) == 0xC0 ? 2 : (lead & 0xF0) == 0xE0 ? 3 : 4;
+        }
+
+        private static int codePointAt(byte[] bytes, int i) {
+            int lead = bytes[i] & 0xFF;
+            return switch (encodedLength(bytes[i])) {
+            case 1 -> lead;
+            case 2 -> (lead & 0x1F) << 6 | bytes[i + 1] & 0x3F;
+            case 3 -> (lead & 0x0F) << 12 | (bytes[i + 1] & 0x3F) << 6 | bytes[i + 2] & 0x3F;
+            default -> (lead & 0x07) << 18 | (bytes[i + 1] & 0x3F) << 12 | (bytes[i + 2] & 0x3F) << 6
+                    | bytes[i + 3] & 0x3F;
+            };
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package com.example.rental;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Durable mode of {@link CarRepository}: every add and availability change is appended to a
+ * write-ahead log, and the whole fleet is periodically written to a {@link MappedFleetSnapshot}.
+ * At startup the latest snapshot is memory-mapped, then the log segments written since are replayed.
+ * <p>
+ * Log records hold absolute values (add if absent, set availability), so replaying a record
+ * already reflected in the snapshot is harmless. Enabled with {@code rental.persistence.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(name = "rental.persistence.enabled", havingValue = "true")
+public class FleetJournal implements CarRepositoryListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FleetJournal.class);
+
+    static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final byte RECORD_ADD = 1;
+    private static final byte RECORD_AVAILABILITY = 2;
+
+    /**
+     * When appended records are forced to disk
+     */
+    public enum FsyncPolicy {
+        /** Each mutation is forced to disk before it returns */
+        EVERY_WRITE,
+        /** Each mutation waits for a force, but concurrent mutations share it (group commit) */
+        BATCH,
+        /** Mutations return at once and the log is forced in the background at a fixed interval */
+        INTERVAL
+    }
+
+    private final CarRepository carRepository;
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMillis;
+    private final long snapshotIntervalMillis;
+
+    /** Guards the log stream, the appended counter and segment rotation */
+    private final ReentrantLock appendLock = new ReentrantLock();
+    /** Held by the thread forcing the log, so the others wait for it instead of forcing again */
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    private ScheduledExecutorService scheduler;
+    private FileChannel channel;
+    private DataOutputStream log;
+    private long generation;
+    private long appended;
+    private volatile long synced;
+
+    public FleetJournal(CarRepository carRepository,
+            @Value("${rental.persistence.directory:data}") Path directory,
+            @Value("${rental.persistence.fsync:BATCH}") FsyncPolicy fsyncPolicy,
+            @Value("${rental.persistence.fsync-interval-ms:100}") long fsyncIntervalMillis,
+            @Value("${rental.persistence.snapshot-interval-ms:300000}") long snapshotIntervalMillis) {
+        this.carRepository = carRepository;
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+    }
+
+    /**
+     * Restore the fleet from disk, then start logging the repository mutations
+     *
+     * @throws IOException if the journal cannot be read or opened
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+        long start = System.nanoTime();
+        long snapshotGeneration = loadSnapshot();
+        long nextSegment = snapshotGeneration;
+        long replayed = 0;
+        for (long segment : segments()) {
+            if (segment >= snapshotGeneration) {
+                replayed += replaySegment(segmentPath(segment));
+                nextSegment = segment + 1;
+            }
+        }
+        LOGGER.info("Restored snapshot generation {} and replayed {} log records in {} ms", snapshotGeneration, replayed,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        // Never append after a possibly torn record: start a new segment
+        openSegment(nextSegment);
+        carRepository.addListener(this);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fleet-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            scheduler.scheduleWithFixedDelay(this::syncQuietly, fsyncIntervalMillis, fsyncIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+        if (snapshotIntervalMillis > 0) {
+            scheduler.scheduleWithFixedDelay(this::snapshotQuietly, snapshotIntervalMillis, snapshotIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop logging and force everything appended so far to disk
+     *
+     * @throws IOException if the log cannot be forced or closed
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        carRepository.removeListener(this);
+        if (scheduler != null) {
+            // No interrupt: it would close the channel under a background force, the sync lock waits for it instead
+            scheduler.shutdown();
+        }
+        syncLock.lock();
+        appendLock.lock();
+        try {
+            if (log != null) {
+                log.flush();
+                channel.force(false);
+                log.close();
+                log = null;
+            }
+        } finally {
+            appendLock.unlock();
+            syncLock.unlock();
+        }
+    }
+
+    @Override
+    public void carsAdded(List<Car> cars) {
+        long sequence;
+        appendLock.lock();
+        try {
+            if (log == null) {
+                return;
+            }
+            for (Car car : cars) {
+                log.writeByte(RECORD_ADD);
+                writeCar(log, car);
+            }
+            sequence = afterAppend();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            appendLock.unlock();
+        }
+        awaitSync(sequence);
+    }
+
+    @Override
+    public void carUpdated(Car car) {
+        long sequence;
+        appendLock.lock();
+        try {
+            if (log == null) {
+                return;
+            }
+            // Read the current car under the lock, so the last record of a car always holds its latest availability
+            // even when notifications of concurrent updates arrive out of order
+            Car current = carRepository.findByRegistrationNumber(car.getRegistrationNumber()).orElse(car);
+            log.writeByte(RECORD_AVAILABILITY);
+            log.writeUTF(current.getRegistrationNumber());
+            log.writeBoolean(current.isAvailable());
+            sequence = afterAppend();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            appendLock.unlock();
+        }
+        awaitSync(sequence);
+    }
+
+    /**
+     * Write the whole fleet to a new snapshot and delete the log segments it covers.
+     * Mutations keep going to a fresh segment while the snapshot is written
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void snapshot() throws IOException {
+        long snapshotGeneration;
+        syncLock.lock();
+        appendLock.lock();
+        try {
+            log.flush();
+            channel.force(false);
+            log.close();
+            synced = appended;
+            snapshotGeneration = generation + 1;
+            openSegment(snapshotGeneration);
+        } finally {
+            appendLock.unlock();
+            syncLock.unlock();
+        }
+
+        Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        int count = MappedFleetSnapshot.write(temporary, snapshotGeneration,
+                carRepository.iterateCars(null, null, false, null));
+        Files.move(temporary, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        for (long segment : segments()) {
+            if (segment < snapshotGeneration) {
+                Files.deleteIfExists(segmentPath(segment));
+            }
+        }
+        LOGGER.debug("Wrote snapshot {} with {} cars", snapshotGeneration, count);
+    }
+
+    private long afterAppend() throws IOException {
+        appended++;
+        if (fsyncPolicy == FsyncPolicy.EVERY_WRITE) {
+            log.flush();
+            channel.force(false);
+            synced = appended;
+        }
+        return appended;
+    }
+
+    /**
+     * Group commit: the first waiting thread forces everything appended so far,
+     * the threads queued behind it find their record already on disk
+     */
+    private void awaitSync(long sequence) {
+        if (fsyncPolicy != FsyncPolicy.BATCH || synced >= sequence) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (synced < sequence) {
+                sync();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Must be called with the sync lock held. The force runs outside the append lock,
+     * so other threads keep appending meanwhile
+     */
+    private void sync() throws IOException {
+        long target;
+        FileChannel current;
+        appendLock.lock();
+        try {
+            if (log == null) {
+                return;
+            }
+            log.flush();
+            target = appended;
+            current = channel;
+        } finally {
+            appendLock.unlock();
+        }
+        current.force(false);
+        synced = target;
+    }
+
+    private void syncQuietly() {
+        syncLock.lock();
+        try {
+            sync();
+        } catch (IOException e) {
+            LOGGER.error("Could not force the write-ahead log", e);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException e) {
+            LOGGER.error("Could not write the fleet snapshot", e);
+        }
+    }
+
+    private void openSegment(long segment) throws IOException {
+        FileOutputStream file = new FileOutputStream(segmentPath(segment).toFile(), true);
+        channel = file.getChannel();
+        log = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+        generation = segment;
+    }
+
+    /**
+     * Map the snapshot and hand it to the repository, which decodes cars only when they are needed
+     */
+    private long loadSnapshot() throws IOException {
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(snapshot)) {
+            return 0;
+        }
+        MappedFleetSnapshot mapped = MappedFleetSnapshot.open(snapshot);
+        carRepository.attachSnapshot(mapped);
+        return mapped.getGeneration();
+    }
+
+    private long replaySegment(Path segment) throws IOException {
+        long records = 0;
+        try (DataInputStream in = open(segment)) {
+            while (true) {
+                byte type = in.readByte();
+                if (type == RECORD_ADD) {
+                    carRepository.addCar(readCar(in));
+                } else if (type == RECORD_AVAILABILITY) {
+                    String registrationNumber = in.readUTF();
+                    boolean available = in.readBoolean();
+                    carRepository.findByRegistrationNumber(registrationNumber)
+                            .ifPresent(c -> carRepository.updateCar(c.withAvailable(available)));
+                } else {
+                    throw new IOException("Unknown record type " + type + " in " + segment);
+                }
+                records++;
+            }
+        } catch (EOFException e) {
+            // End of the segment, possibly with a record torn by a crash: it was never acknowledged
+            return records;
+        }
+    }
+
+    private List<Long> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(SEGMENT_PREFIX + segment + SEGMENT_SUFFIX);
+    }
+
+    private static DataInputStream open(Path path) throws IOException {
+        InputStream in = Files.newInputStream(path);
+        return new DataInputStream(new BufferedInputStream(in, 1 << 16));
+    }
+
+    private static void writeCar(DataOutputStream out, Car car) throws IOException {
+        out.writeUTF(car.getRegistrationNumber());
+        out.writeBoolean(car.getModel() != null);
+        if (car.getModel() != null) {
+            out.writeUTF(car.getModel());
+        }
+        out.writeBoolean(car.isAvailable());
+    }
+
+    private static Car readCar(DataInputStream in) throws IOException {
+        String registrationNumber = in.readUTF();
+        String model = in.readBoolean() ? in.readUTF() : null;
+        return new Car(registrationNumber, model, in.readBoolean());
+    }
+}
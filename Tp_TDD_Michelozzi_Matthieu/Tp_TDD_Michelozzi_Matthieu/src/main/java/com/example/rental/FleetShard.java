@@ -0,0 +1,128 @@
+package com.example.rental;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The cars whose registration number hashes to one shard of {@link CarRepository}, with their versions.
+ * Subclasses decide how the cars are stored
+ */
+abstract class FleetShard {
+
+    /**
+     * Incremented after every add or update, so readers can tell whether a published view is stale
+     */
+    final AtomicLong version = new AtomicLong();
+
+    /**
+     * Incremented after every add or update of a car of the model, indexed by lower-cased model
+     */
+    final NavigableMap<String, AtomicLong> modelVersions = new ConcurrentSkipListMap<>();
+
+    /**
+     * Cars, counted by every add
+     */
+    final AtomicLong countedCars = new AtomicLong();
+
+    /**
+     * Available cars, counted by every write
+     */
+    final AtomicLong availableCars = new AtomicLong();
+
+    /**
+     * Rented cars by lower-cased model, counted by every write, so models differing only by case are counted
+     * together like they are searched together. Cars without a model are not counted here
+     */
+    final Map<String, AtomicLong> rentedByModel = new ConcurrentHashMap<>();
+
+    /**
+     * @return the car, or null if it is not in this shard
+     */
+    abstract Car get(String registrationNumber);
+
+    /**
+     * @return true if the car was added, false if its registration number is already taken
+     */
+    abstract boolean insert(Car car);
+
+    /**
+     * Replace a car, moving it to the index of its new model if its model changed
+     *
+     * @return the car replaced, or null if it is not in this shard
+     */
+    abstract Car replace(Car car);
+
+    /**
+     * Replace a car by a copy with another availability, if it still has the expected one
+     *
+     * @return the copy, or null if the car is unknown or does not have the expected availability
+     */
+    abstract Car compareAndSetAvailable(String registrationNumber, boolean expected, boolean available);
+
+    /**
+     * @param model the model to search for ignoring case, or null for all models
+     * @param modelPrefix true if model is a prefix rather than a full model name
+     * @return the matching cars, in no particular order
+     */
+    abstract List<Car> collectCars(String model, boolean modelPrefix);
+
+    /**
+     * @param after the registration number to start after, or null to start from the beginning
+     * @param model the model to search for ignoring case, or null for all models
+     * @param modelPrefix true if model is a prefix rather than a full model name
+     * @return iterators over the matching registration numbers, each in ascending order
+     */
+    abstract List<Iterator<String>> registrations(String after, String model, boolean modelPrefix);
+
+    abstract int countAvailable();
+
+    abstract int size();
+
+    /**
+     * Update the counters for a write. Called within the write, before the car can be seen by another write,
+     * so the writes to one car update the counters in the order they happen and a car is never uncounted before
+     * it is counted. A car is added to the cars before the available cars, so reading the available cars first
+     * never finds more of them than cars
+     *
+     * @param previous the car before the write, or null if it is being added
+     * @param current the car after the write
+     */
+    void count(Car previous, Car current) {
+        if (previous == null) {
+            countedCars.incrementAndGet();
+        } else if (previous.isAvailable()) {
+            availableCars.decrementAndGet();
+        } else if (previous.getModel() != null) {
+            rentedCounter(previous.getModel()).decrementAndGet();
+        }
+        if (current.isAvailable()) {
+            availableCars.incrementAndGet();
+        } else if (current.getModel() != null) {
+            rentedCounter(current.getModel()).incrementAndGet();
+        }
+    }
+
+    private AtomicLong rentedCounter(String model) {
+        return rentedByModel.computeIfAbsent(normalizeModel(model), m -> new AtomicLong());
+    }
+
+    static String normalizeModel(String model) {
+        return model.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return true if both cars have the same model ignoring case, or both have none
+     */
+    static boolean sameModel(Car previous, Car current) {
+        if (previous.getModel() == null || current.getModel() == null) {
+            return previous.getModel() == current.getModel();
+        }
+        return normalizeModel(previous.getModel()).equals(normalizeModel(current.getModel()));
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.rental;
+
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Counts of the fleet, read from the counters kept by the repository on each write
+ */
+public class FleetStatistics {
+    private final long size;
+    private final long available;
+    private final SortedMap<String, Long> rentedByModel;
+
+    public FleetStatistics(long size, long available, SortedMap<String, Long> rentedByModel) {
+        this.size = size;
+        this.available = available;
+        this.rentedByModel = Collections.unmodifiableSortedMap(new TreeMap<>(rentedByModel));
+    }
+
+    /**
+     * @return the number of cars in the fleet
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of available cars
+     */
+    public long getAvailable() {
+        return available;
+    }
+
+    /**
+     * @return the number of rented cars
+     */
+    public long getRented() {
+        return size - available;
+    }
+
+    /**
+     * @return the number of rented cars of each model with at least one rented, by lower-cased model name, so
+     *         "Tesla" and "tesla" are counted together as they are searched. Rented cars without a model are only
+     *         counted in {@link #getRented()}
+     */
+    public SortedMap<String, Long> getRentedByModel() {
+        return rentedByModel;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.rental;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Results of the requests sent with an Idempotency-Key header, so a retry gets the original result without doing
+ * the work again. A retry arriving while the original request is still running waits for its result.
+ * <p>
+ * Keys are kept for the retention period, then dropped: entries are in insertion order, which is also expiry
+ * order, so expired entries are always at the head and memory only grows with the keys of the retention window.
+ * Beyond the maximum number of entries the oldest are dropped early
+ */
+@Component
+public class IdempotencyStore {
+
+    private final long retentionNanos;
+    private final int maxEntries;
+
+    /** Guards the entries */
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    public IdempotencyStore(@Value("${rental.idempotency.retention-ms:600000}") long retentionMillis,
+            @Value("${rental.idempotency.max-entries:100000}") int maxEntries) {
+        this.retentionNanos = TimeUnit.MILLISECONDS.toNanos(retentionMillis);
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Run an action once per key
+     *
+     * @param key the idempotency key sent by the client
+     * @param request what the request does, e.g. "rent ABC123", to refuse a key reused for another request
+     * @param action the work of the request
+     * @return the result of the action, run now or by the first request with this key
+     * @throws KeyReusedException if the key was first sent with another request
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, String request, Supplier<T> action) {
+        Entry entry;
+        boolean first = false;
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            evictExpired(now);
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(request, now);
+                entries.put(key, entry);
+                first = true;
+                if (entries.size() > maxEntries) {
+                    Iterator<Entry> eldest = entries.values().iterator();
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (!entry.request.equals(request)) {
+            throw new KeyReusedException();
+        }
+        if (!first) {
+            try {
+                return (T) entry.result.join();
+            } catch (CompletionException e) {
+                // The original request failed and was forgotten, this one runs it again
+                return execute(key, request, action);
+            }
+        }
+        try {
+            T result = action.get();
+            entry.result.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            lock.lock();
+            try {
+                entries.remove(key, entry);
+            } finally {
+                lock.unlock();
+            }
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of keys kept
+     */
+    public int size() {
+        lock.lock();
+        try {
+            evictExpired(System.nanoTime());
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext() && now - iterator.next().created >= retentionNanos) {
+            iterator.remove();
+        }
+    }
+
+    private static final class Entry {
+        private final String request;
+        private final long created;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        Entry(String request, long created) {
+            this.request = request;
+            this.created = created;
+        }
+    }
+
+    /**
+     * Exception for an idempotency key sent again with another request
+     */
+    public static class KeyReusedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.rental;
+
+/**
+ * Counts of a bulk import
+ */
+public class ImportResult {
+    private final long accepted;
+    private final long conflicts;
+    private final long rejected;
+
+    public ImportResult(long accepted, long conflicts, long rejected) {
+        this.accepted = accepted;
+        this.conflicts = conflicts;
+        this.rejected = rejected;
+    }
+
+    /**
+     * @return the number of cars added
+     */
+    public long getAccepted() {
+        return accepted;
+    }
+
+    /**
+     * @return the number of rows whose registration number was already taken
+     */
+    public long getConflicts() {
+        return conflicts;
+    }
+
+    /**
+     * @return the number of rows that could not be parsed
+     */
+    public long getRejected() {
+        return rejected;
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.rental;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Read-only binary snapshot of the fleet, memory-mapped and decoded lazily.
+ * Opening it costs one mmap call whatever the fleet size: cars are only turned into heap objects
+ * when they are looked up or iterated.
+ * <p>
+ * Layout (big-endian):
+ * <pre>
+ * header  int magic, int version, long generation, int count, int tableOffset
+ * records int registrationLength, registration UTF-8, int modelLength (-1 for null), model UTF-8, byte available
+ * table   int recordOffset[count], in registration number order
+ * </pre>
+ * Offsets are ints, so a snapshot is limited to 2 GB (tens of millions of cars).
+ * Snapshots of version 1, with short lengths, can still be read.
+ */
+public final class MappedFleetSnapshot {
+
+    private static final int MAGIC = 0x464c5432;
+    private static final int VERSION = 2;
+    private static final int SHORT_LENGTH_VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int COUNT_POSITION = 16;
+
+    private final ByteBuffer buffer;
+    private final long generation;
+    private final int count;
+    private final int tableOffset;
+    /** Bytes of each string length */
+    private final int lengthSize;
+
+    private MappedFleetSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC
+                || (buffer.getInt(4) != VERSION && buffer.getInt(4) != SHORT_LENGTH_VERSION)) {
+            throw new IOException("Not a fleet snapshot");
+        }
+        this.lengthSize = buffer.getInt(4) == SHORT_LENGTH_VERSION ? Short.BYTES : Integer.BYTES;
+        this.generation = buffer.getLong(8);
+        this.count = buffer.getInt(COUNT_POSITION);
+        this.tableOffset = buffer.getInt(COUNT_POSITION + 4);
+    }
+
+    /**
+     * Map a snapshot file in memory. Nothing is decoded yet
+     *
+     * @param file the snapshot file
+     * @return the mapped snapshot
+     * @throws IOException if the file cannot be mapped or is not a snapshot
+     */
+    public static MappedFleetSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedFleetSnapshot(buffer);
+        }
+    }
+
+    /**
+     * Write a snapshot file
+     *
+     * @param file the file to write
+     * @param generation the journal generation the snapshot belongs to
+     * @param cars the cars, in registration number order
+     * @return the number of cars written
+     * @throws IOException if the file cannot be written
+     */
+    public static int write(Path file, long generation, Iterator<Car> cars) throws IOException {
+        int[] offsets = new int[1024];
+        int count = 0;
+        int tableOffset;
+        try (FileOutputStream stream = new FileOutputStream(file.toFile());
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(generation);
+            out.writeInt(0);
+            out.writeInt(0);
+            while (cars.hasNext()) {
+                Car car = cars.next();
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                }
+                offsets[count++] = out.size();
+                writeString(out, car.getRegistrationNumber());
+                writeString(out, car.getModel());
+                out.writeByte(car.isAvailable() ? 1 : 0);
+            }
+            tableOffset = out.size();
+            for (int i = 0; i < count; i++) {
+                out.writeInt(offsets[i]);
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(8);
+            header.putInt(count).putInt(tableOffset).flip();
+            stream.getChannel().write(header, COUNT_POSITION);
+            stream.getFD().sync();
+        }
+        return count;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Decode one car with a binary search over the registration table
+     *
+     * @param registrationNumber the registration number to look for
+     * @return the decoded car, or null if it is not in the snapshot
+     */
+    public Car find(String registrationNumber) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int offset = recordOffset(middle);
+            int comparison = readString(offset).compareTo(registrationNumber);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return decode(offset);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return an iterator decoding the cars one at a time, in registration number order
+     */
+    public Iterator<Car> iterator() {
+        return new Iterator<>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < count;
+            }
+
+            @Override
+            public Car next() {
+                if (index >= count) {
+                    throw new NoSuchElementException();
+                }
+                return decode(recordOffset(index++));
+            }
+        };
+    }
+
+    private int recordOffset(int index) {
+        return buffer.getInt(tableOffset + index * Integer.BYTES);
+    }
+
+    private Car decode(int offset) {
+        int registrationLength = readLength(offset);
+        String registrationNumber = readString(offset);
+        int modelOffset = offset + lengthSize + registrationLength;
+        int modelLength = readLength(modelOffset);
+        String model = readString(modelOffset);
+        int availableOffset = modelOffset + lengthSize + Math.max(modelLength, 0);
+        return new Car(registrationNumber, model, buffer.get(availableOffset) != 0);
+    }
+
+    private int readLength(int offset) {
+        return lengthSize == Short.BYTES ? buffer.getShort(offset) : buffer.getInt(offset);
+    }
+
+    private String readString(int offset) {
+        int length = readLength(offset);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(offset + lengthSize, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.rental;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Models of a columnar fleet, each stored once and referred to by an int id. A fleet has far fewer models than
+ * cars, so the dictionary stays small and searches scan it whole
+ */
+final class ModelDictionary {
+
+    /** Id of a car without a model */
+    static final int NO_MODEL = -1;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    /** Guards the additions of models */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Models by id, replaced by a longer copy when a model is added */
+    private volatile String[] models = new String[0];
+
+    /**
+     * @param model the model, or null
+     * @return the id of the model, added to the dictionary if new
+     */
+    int idOf(String model) {
+        if (model == null) {
+            return NO_MODEL;
+        }
+        Integer id = ids.get(model);
+        if (id != null) {
+            return id;
+        }
+        lock.lock();
+        try {
+            id = ids.get(model);
+            if (id == null) {
+                String[] current = models;
+                String[] longer = Arrays.copyOf(current, current.length + 1);
+                longer[current.length] = model;
+                // Published before the id, so whoever reads the id finds the model
+                models = longer;
+                id = current.length;
+                ids.put(model, id);
+            }
+            return id;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the model with this id, or null for {@link #NO_MODEL}
+     */
+    String model(int id) {
+        return id == NO_MODEL ? null : models[id];
+    }
+
+    /**
+     * @param model the model ignoring case, or the beginning of the model name
+     * @param modelPrefix true if model is a prefix rather than a full model name
+     * @return the ids of the matching models
+     */
+    BitSet matching(String model, boolean modelPrefix) {
+        String normalized = FleetShard.normalizeModel(model);
+        String[] current = models;
+        BitSet matching = new BitSet(current.length);
+        for (int id = 0; id < current.length; id++) {
+            String candidate = FleetShard.normalizeModel(current[id]);
+            if (modelPrefix ? candidate.startsWith(normalized) : candidate.equals(normalized)) {
+                matching.set(id);
+            }
+        }
+        return matching;
+    }
+
+    int size() {
+        return models.length;
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.rental;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Results of model searches, least recently used first out.
+ * <p>
+ * An entry is only dropped when a car it may contain is added, rented or returned: a change to a
+ * "Toyota" car invalidates the "toyota" search and the "toy*", "to*", "t*" and "*" prefix searches,
+ * nothing else. A search loading while a matching car changes does not store its result,
+ * so a stale list is never cached.
+ * <p>
+ * The entries are in a concurrent map and each search or invalidation only touches its own keys, so there is no
+ * lock common to the whole cache. The eviction scans the entries for the least recently used one, which is cheap
+ * at the sizes a search cache has, and only happens when a load would exceed the maximum
+ */
+@Component
+public class ModelSearchCache implements CarRepositoryListener {
+
+    private final CarRepository carRepository;
+    private final int maxEntries;
+
+    /** Result of each search, or a slot without result while it loads */
+    private final Map<Key, Slot> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public ModelSearchCache(CarRepository carRepository,
+            @Value("${rental.search-cache.max-entries:1000}") int maxEntries) {
+        this.carRepository = carRepository;
+        this.maxEntries = maxEntries;
+    }
+
+    @PostConstruct
+    public void start() {
+        carRepository.addListener(this);
+    }
+
+    @PreDestroy
+    public void close() {
+        carRepository.removeListener(this);
+    }
+
+    /**
+     * Get the result of a search, loading it on a miss
+     *
+     * @param model the model, or the model prefix, ignoring case
+     * @param prefix true if model is a prefix rather than a full model name
+     * @param loader searches the repository
+     * @return the immutable result, shared by all callers until it is invalidated
+     */
+    public List<Car> get(String model, boolean prefix, Supplier<List<Car>> loader) {
+        if (model == null) {
+            return loader.get();
+        }
+        Key key = new Key(normalizeModel(model), prefix);
+        Slot cached = entries.get(key);
+        if (cached != null && cached.result != null) {
+            cached.lastUsed = System.nanoTime();
+            hits.incrementAndGet();
+            return cached.result;
+        }
+        // The latest load of a search wins, and an invalidation during the load removes its slot
+        Slot loading = new Slot(null);
+        entries.put(key, loading);
+        misses.incrementAndGet();
+        List<Car> result = null;
+        try {
+            result = Collections.unmodifiableList(loader.get());
+        } finally {
+            store(key, loading, result);
+        }
+        return result;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of entries dropped to stay within the maximum size
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return the number of entries dropped because a matching car changed
+     */
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    /**
+     * @return the number of cached searches
+     */
+    public int size() {
+        int size = 0;
+        for (Slot slot : entries.values()) {
+            if (slot.result != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void carsAdded(List<Car> cars) {
+        Set<String> models = new HashSet<>();
+        for (Car car : cars) {
+            if (car.getModel() != null) {
+                models.add(normalizeModel(car.getModel()));
+            }
+        }
+        invalidate(models);
+    }
+
+    @Override
+    public void carUpdated(Car car) {
+        if (car.getModel() != null) {
+            invalidate(Set.of(normalizeModel(car.getModel())));
+        }
+    }
+
+    /**
+     * A car moved to another model leaves the searches of its previous model too
+     */
+    @Override
+    public void carReplaced(Car previous, Car car) {
+        carUpdated(previous);
+        carUpdated(car);
+    }
+
+    private void invalidate(Set<String> models) {
+        if (models.isEmpty()) {
+            return;
+        }
+        for (String model : models) {
+            invalidate(new Key(model, false));
+            for (int length = 0; length <= model.length(); length++) {
+                invalidate(new Key(model.substring(0, length), true));
+            }
+        }
+    }
+
+    private void invalidate(Key key) {
+        Slot removed = entries.remove(key);
+        if (removed != null && removed.result != null) {
+            invalidations.incrementAndGet();
+        }
+    }
+
+    /**
+     * Replace the slot of a load by its result, unless the search was invalidated or loaded again meanwhile
+     */
+    private void store(Key key, Slot loading, List<Car> result) {
+        if (result == null || maxEntries <= 0) {
+            entries.remove(key, loading);
+            return;
+        }
+        if (entries.replace(key, loading, new Slot(result)) && entries.size() > maxEntries) {
+            evictLeastRecentlyUsed();
+        }
+    }
+
+    private void evictLeastRecentlyUsed() {
+        while (entries.size() > maxEntries) {
+            Map.Entry<Key, Slot> eldest = null;
+            for (Map.Entry<Key, Slot> entry : entries.entrySet()) {
+                Slot slot = entry.getValue();
+                if (slot.result != null && (eldest == null || slot.lastUsed - eldest.getValue().lastUsed < 0)) {
+                    eldest = entry;
+                }
+            }
+            if (eldest == null) {
+                return;
+            }
+            if (entries.remove(eldest.getKey(), eldest.getValue())) {
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private static String normalizeModel(String model) {
+        return model.toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Slot {
+        /** The result, or null while loading */
+        private final List<Car> result;
+        private volatile long lastUsed = System.nanoTime();
+
+        Slot(List<Car> result) {
+            this.result = result;
+        }
+    }
+
+    private static final class Key {
+        private final String model;
+        private final boolean prefix;
+
+        Key(String model, boolean prefix) {
+            this.model = model;
+            this.prefix = prefix;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key && prefix == key.prefix && model.equals(key.model);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(model, prefix);
+        }
+    }
+}
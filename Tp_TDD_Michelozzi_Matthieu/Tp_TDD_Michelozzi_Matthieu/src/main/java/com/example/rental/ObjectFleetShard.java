@@ -0,0 +1,158 @@
+package com.example.rental;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Shard keeping each car as a {@link Car} object in concurrent maps. Reads never lock, and a write only locks
+ * its entry of the map
+ */
+final class ObjectFleetShard extends FleetShard {
+
+    /**
+     * Cars indexed by registration number, so lookups and updates do not depend on the fleet size
+     */
+    private final Map<String, Car> cars = new ConcurrentHashMap<>();
+
+    /**
+     * Registration numbers in ascending order, used to serve pages without copying the fleet
+     */
+    private final NavigableSet<String> orderedRegistrations = new ConcurrentSkipListSet<>();
+
+    /**
+     * Registration numbers indexed by lower-cased model, sorted so prefix lookups are range scans
+     */
+    private final NavigableMap<String, NavigableSet<String>> registrationsByModel = new ConcurrentSkipListMap<>();
+
+    @Override
+    Car get(String registrationNumber) {
+        return cars.get(registrationNumber);
+    }
+
+    @Override
+    boolean insert(Car car) {
+        boolean[] inserted = new boolean[1];
+        // Counted within the insert, so a rent or return of the car can only be counted after it
+        cars.computeIfAbsent(car.getRegistrationNumber(), registrationNumber -> {
+            count(null, car);
+            inserted[0] = true;
+            return car;
+        });
+        if (!inserted[0]) {
+            return false;
+        }
+        orderedRegistrations.add(car.getRegistrationNumber());
+        if (car.getModel() != null) {
+            registrationsByModel
+                    .computeIfAbsent(normalizeModel(car.getModel()), m -> new ConcurrentSkipListSet<>())
+                    .add(car.getRegistrationNumber());
+        }
+        return true;
+    }
+
+    /**
+     * The model index is updated within the replacement, so concurrent updates of the car move it in their order
+     */
+    @Override
+    Car replace(Car car) {
+        Car[] replaced = new Car[1];
+        cars.computeIfPresent(car.getRegistrationNumber(), (registrationNumber, previous) -> {
+            if (!sameModel(previous, car)) {
+                if (previous.getModel() != null) {
+                    NavigableSet<String> registrations = registrationsByModel.get(normalizeModel(previous.getModel()));
+                    if (registrations != null) {
+                        registrations.remove(registrationNumber);
+                    }
+                }
+                if (car.getModel() != null) {
+                    registrationsByModel
+                            .computeIfAbsent(normalizeModel(car.getModel()), m -> new ConcurrentSkipListSet<>())
+                            .add(registrationNumber);
+                }
+            }
+            count(previous, car);
+            replaced[0] = previous;
+            return car;
+        });
+        return replaced[0];
+    }
+
+    /**
+     * The check, the replacement and the counting are done as one step on the entry of the car
+     */
+    @Override
+    Car compareAndSetAvailable(String registrationNumber, boolean expected, boolean available) {
+        Car[] updated = new Car[1];
+        cars.computeIfPresent(registrationNumber, (key, current) -> {
+            if (current.isAvailable() != expected) {
+                return current;
+            }
+            updated[0] = current.withAvailable(available);
+            count(current, updated[0]);
+            return updated[0];
+        });
+        return updated[0];
+    }
+
+    @Override
+    List<Car> collectCars(String model, boolean modelPrefix) {
+        List<Car> result = new ArrayList<>();
+        for (NavigableSet<String> registrations : registrationSets(model, modelPrefix)) {
+            for (String registrationNumber : registrations) {
+                Car car = cars.get(registrationNumber);
+                if (car != null) {
+                    result.add(car);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    List<Iterator<String>> registrations(String after, String model, boolean modelPrefix) {
+        List<Iterator<String>> iterators = new ArrayList<>();
+        for (NavigableSet<String> registrations : registrationSets(model, modelPrefix)) {
+            iterators.add((after == null ? registrations : registrations.tailSet(after, false)).iterator());
+        }
+        return iterators;
+    }
+
+    @Override
+    int countAvailable() {
+        int available = 0;
+        for (Car car : cars.values()) {
+            if (car.isAvailable()) {
+                available++;
+            }
+        }
+        return available;
+    }
+
+    @Override
+    int size() {
+        return cars.size();
+    }
+
+    /**
+     * @return the sorted sets of registration numbers matching the model, or all of them if model is null
+     */
+    private Collection<NavigableSet<String>> registrationSets(String model, boolean modelPrefix) {
+        if (model == null) {
+            return List.of(orderedRegistrations);
+        }
+        String from = normalizeModel(model);
+        if (!modelPrefix) {
+            NavigableSet<String> registrations = registrationsByModel.get(from);
+            return registrations == null ? List.of() : List.of(registrations);
+        }
+        return registrationsByModel.subMap(from, true, from + Character.MAX_VALUE, true).values();
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.rental;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive variant of {@link CarController}, served by {@link ReactiveRentalServer} on Reactor Netty rather than by
+ * the servlet container. Listings are streamed as newline-delimited JSON with backpressure: the next cars are only
+ * read once the connection can take them, and no thread waits for a slow client meanwhile, so a few event-loop
+ * threads serve every open stream. Cars are written {@value #CARS_PER_WRITE} lines at a time, as a write per car
+ * would cost the event loop more than the encoding. Rent, return and add run on the write scheduler of
+ * {@link ReactiveCarRentalService}, and get a 503 when it is saturated
+ */
+@Component
+@ConditionalOnProperty(name = "rental.reactive.enabled", havingValue = "true")
+public class ReactiveCarController {
+
+    static final String PATH = "/reactive/cars";
+    static final int CARS_PER_WRITE = 256;
+
+    private final ReactiveCarRentalService reactiveCarRentalService;
+    private final ObjectMapper objectMapper;
+
+    public ReactiveCarController(ReactiveCarRentalService reactiveCarRentalService, ObjectMapper objectMapper) {
+        this.reactiveCarRentalService = reactiveCarRentalService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @return the routes of the reactive API
+     */
+    public RouterFunction<ServerResponse> routes() {
+        return RouterFunctions.route()
+                .GET(PATH, this::getAllCars)
+                .GET(PATH + "/search", this::searchCarsByModel)
+                .POST(PATH + "/rent/{registrationNumber}", this::rentCar)
+                .POST(PATH + "/return/{registrationNumber}", this::returnCar)
+                .POST(PATH + "/add", this::addCar)
+                .build();
+    }
+
+    /**
+     * Stream the cars in registration number order, with the optional model (a trailing '*' for a prefix) and
+     * availability parameters
+     */
+    Mono<ServerResponse> getAllCars(ServerRequest request) {
+        return stream(request.queryParam("model").orElse(null), request);
+    }
+
+    /**
+     * Stream the cars of the required model parameter ignoring case, or of a prefix followed by '*' (e.g. "Tesla*")
+     */
+    Mono<ServerResponse> searchCarsByModel(ServerRequest request) {
+        return request.queryParam("model")
+                .map(model -> stream(model, request))
+                .orElseGet(() -> ServerResponse.badRequest().build());
+    }
+
+    Mono<ServerResponse> rentCar(ServerRequest request) {
+        return write(reactiveCarRentalService.rentCar(request.pathVariable("registrationNumber"))
+                .flatMap(rented -> ServerResponse.ok().bodyValue(rented)));
+    }
+
+    Mono<ServerResponse> returnCar(ServerRequest request) {
+        return write(reactiveCarRentalService.returnCar(request.pathVariable("registrationNumber"))
+                .then(ServerResponse.ok().build()));
+    }
+
+    /**
+     * Add a new car: 201 with true once it is added, or 409 with false if its registration number is taken
+     */
+    Mono<ServerResponse> addCar(ServerRequest request) {
+        return write(request.bodyToMono(Car.class)
+                .flatMap(reactiveCarRentalService::addCar)
+                .flatMap(added -> ServerResponse.status(added ? HttpStatus.CREATED : HttpStatus.CONFLICT)
+                        .bodyValue(added)));
+    }
+
+    private Mono<ServerResponse> stream(String model, ServerRequest request) {
+        Boolean available = request.queryParam("available").map(Boolean::valueOf).orElse(null);
+        Flux<DataBuffer> lines = reactiveCarRentalService.streamCars(model, available)
+                .buffer(CARS_PER_WRITE)
+                .map(this::encode);
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(BodyInserters.fromDataBuffers(lines));
+    }
+
+    private DataBuffer encode(List<Car> cars) {
+        ByteArrayOutputStream lines = new ByteArrayOutputStream(cars.size() * 64);
+        try {
+            for (Car car : cars) {
+                lines.write(objectMapper.writeValueAsBytes(car));
+                lines.write('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return DefaultDataBufferFactory.sharedInstance.wrap(lines.toByteArray());
+    }
+
+    private static Mono<ServerResponse> write(Mono<ServerResponse> response) {
+        return response.onErrorResume(RejectedExecutionException.class,
+                e -> ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.rental;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Reactive facade of {@link CarRentalService}.
+ * <p>
+ * Reads are lazy: cars are pulled from the in-memory repository indexes only as fast as the subscriber requests
+ * them, on the subscribing thread, so a slow client never makes the server copy the fleet. Writes may wait for
+ * the journal to reach the disk, so they run on a write scheduler of their own, never on an event loop: a fixed
+ * number of threads and a bounded queue, beyond which they fail with a RejectedExecutionException
+ */
+@Service
+@ConditionalOnProperty(name = "rental.reactive.enabled", havingValue = "true")
+public class ReactiveCarRentalService {
+
+    private final CarRentalService carRentalService;
+    private final Scheduler writeScheduler;
+
+    public ReactiveCarRentalService(CarRentalService carRentalService,
+            @Value("${rental.reactive.write-threads:16}") int writeThreads,
+            @Value("${rental.reactive.write-queue:1000}") int writeQueue) {
+        this.carRentalService = carRentalService;
+        this.writeScheduler = Schedulers.newBoundedElastic(writeThreads, writeQueue, "rental-reactive-write");
+    }
+
+    @PreDestroy
+    public void close() {
+        writeScheduler.dispose();
+    }
+
+    /**
+     * Stream the cars in registration number order
+     *
+     * @param model the model to keep ignoring case, with an optional trailing '*' for a prefix, or null for all models
+     * @param available the availability to keep, or null for all cars
+     * @return the cars, read on demand
+     */
+    public Flux<Car> streamCars(String model, Boolean available) {
+        return Flux.fromIterable(() -> carRentalService.iterateCars(model, available));
+    }
+
+    /**
+     * @param registrationNumber the registration number of the car to rent
+     * @return true if the car was rented by this call
+     */
+    public Mono<Boolean> rentCar(String registrationNumber) {
+        return Mono.fromSupplier(() -> carRentalService.rentCar(registrationNumber))
+                .subscribeOn(writeScheduler);
+    }
+
+    /**
+     * @param registrationNumber the registration number of the car to return
+     * @return completes once the car is returned
+     */
+    public Mono<Void> returnCar(String registrationNumber) {
+        return Mono.<Void>fromRunnable(() -> carRentalService.returnCar(registrationNumber))
+                .subscribeOn(writeScheduler);
+    }
+
+    /**
+     * @param car the car to add
+     * @return true if the car was added, false if a car with the same registration number already exists
+     */
+    public Mono<Boolean> addCar(Car car) {
+        return Mono.fromSupplier(() -> carRentalService.addCar(car))
+                .subscribeOn(writeScheduler);
+    }
+}
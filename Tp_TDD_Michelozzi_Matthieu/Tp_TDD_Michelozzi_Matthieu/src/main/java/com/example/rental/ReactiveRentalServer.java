@@ -0,0 +1,85 @@
+package com.example.rental;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.LoopResources;
+
+/**
+ * Serves {@link ReactiveCarController} with Reactor Netty on a port of its own, next to the servlet container.
+ * Connections are multiplexed on a few event-loop threads, so an open stream costs a buffer rather than a thread
+ */
+@Component
+@ConditionalOnProperty(name = "rental.reactive.enabled", havingValue = "true")
+public class ReactiveRentalServer {
+
+    private final ReactiveCarController reactiveCarController;
+    private final ObjectMapper objectMapper;
+    private final int port;
+    private final int eventLoopThreads;
+
+    private LoopResources eventLoops;
+    private DisposableServer server;
+
+    /**
+     * @param port the port to listen on, 0 for any free port
+     * @param eventLoopThreads the number of event-loop threads, 0 for one per core
+     */
+    public ReactiveRentalServer(ReactiveCarController reactiveCarController, ObjectMapper objectMapper,
+            @Value("${rental.reactive.port:8081}") int port,
+            @Value("${rental.reactive.event-loop-threads:0}") int eventLoopThreads) {
+        this.reactiveCarController = reactiveCarController;
+        this.objectMapper = objectMapper;
+        this.port = port;
+        this.eventLoopThreads = eventLoopThreads;
+    }
+
+    @PostConstruct
+    public void start() {
+        eventLoops = LoopResources.create("rental-reactive",
+                eventLoopThreads > 0 ? eventLoopThreads : LoopResources.DEFAULT_IO_WORKER_COUNT, true);
+        server = HttpServer.create()
+                .port(port)
+                .runOn(eventLoops)
+                .handle(new ReactorHttpHandlerAdapter(RouterFunctions.toHttpHandler(reactiveCarController.routes(),
+                        handlerStrategies(objectMapper))))
+                .bindNow();
+    }
+
+    @PreDestroy
+    public void close() {
+        server.disposeNow();
+        eventLoops.dispose();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return server.port();
+    }
+
+    /**
+     * @return strategies reading and writing JSON like the servlet controllers do
+     */
+    static HandlerStrategies handlerStrategies(ObjectMapper objectMapper) {
+        return HandlerStrategies.builder()
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                })
+                .build();
+    }
+}
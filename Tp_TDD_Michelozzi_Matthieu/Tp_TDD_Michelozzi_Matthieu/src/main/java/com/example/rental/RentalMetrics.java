@@ -0,0 +1,174 @@
+package com.example.rental;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Meters of the rental operations, read at /actuator/metrics. Each meter is only registered when listed in
+ * rental.metrics.meters: a meter left out is never looked up nor updated, and without latency the clock is not read
+ */
+@Component
+public class RentalMetrics {
+
+    /** Timer tagged with the operation: rent, return, add or search */
+    public static final String LATENCY = "rental.latency";
+    /** Counter of single and batch rentals, tagged with the outcome. Rolled back rentals are not counted */
+    public static final String RENT_OUTCOMES = "rental.rent.outcomes";
+    /** Counter of single and batch returns, tagged with the outcome. Rolled back returns are not counted */
+    public static final String RETURN_OUTCOMES = "rental.return.outcomes";
+    /** Counter of cars not added because their registration number is taken */
+    public static final String ADD_CONFLICTS = "rental.add.conflicts";
+    /** Gauge of the number of cars */
+    public static final String FLEET_SIZE = "rental.fleet.size";
+    /** Gauge of the number of available cars */
+    public static final String FLEET_AVAILABLE = "rental.fleet.available";
+    /** Counters of the model search cache, tagged with the result: hit, miss, eviction or invalidation */
+    public static final String SEARCH_CACHE = "rental.search.cache";
+
+    private static final Set<String> METERS = Set.of(LATENCY, RENT_OUTCOMES, RETURN_OUTCOMES, ADD_CONFLICTS,
+            FLEET_SIZE, FLEET_AVAILABLE, SEARCH_CACHE);
+
+    /**
+     * Records nothing, for a service built without Spring
+     */
+    static final RentalMetrics DISABLED = new RentalMetrics(null, null, null, Set.of());
+
+    private final Timer rentLatency;
+    private final Timer returnLatency;
+    private final Timer addLatency;
+    private final Timer searchLatency;
+    private final Map<RentalOutcome, Counter> rentOutcomes;
+    private final Map<RentalOutcome, Counter> returnOutcomes;
+    private final Counter addConflicts;
+
+    public RentalMetrics(MeterRegistry registry, CarRepository carRepository, ModelSearchCache modelSearchCache,
+            @Value("${rental.metrics.meters:}") Set<String> meters) {
+        for (String meter : meters) {
+            if (!METERS.contains(meter)) {
+                throw new IllegalArgumentException("Unknown rental meter " + meter + ", expected one of " + METERS);
+            }
+        }
+        boolean latency = meters.contains(LATENCY);
+        rentLatency = latency ? timer(registry, "rent") : null;
+        returnLatency = latency ? timer(registry, "return") : null;
+        addLatency = latency ? timer(registry, "add") : null;
+        searchLatency = latency ? timer(registry, "search") : null;
+        rentOutcomes = meters.contains(RENT_OUTCOMES)
+                ? outcomes(registry, RENT_OUTCOMES, "Rentals by outcome", "already_rented")
+                : null;
+        returnOutcomes = meters.contains(RETURN_OUTCOMES)
+                ? outcomes(registry, RETURN_OUTCOMES, "Returns by outcome", "already_available")
+                : null;
+        addConflicts = meters.contains(ADD_CONFLICTS)
+                ? Counter.builder(ADD_CONFLICTS).description("Cars not added, registration number taken")
+                        .register(registry)
+                : null;
+        if (meters.contains(FLEET_SIZE)) {
+            Gauge.builder(FLEET_SIZE, carRepository, CarRepository::size).description("Cars in the fleet")
+                    .register(registry);
+        }
+        if (meters.contains(FLEET_AVAILABLE)) {
+            Gauge.builder(FLEET_AVAILABLE, carRepository, repository -> repository.getStatistics().getAvailable())
+                    .description("Available cars in the fleet").register(registry);
+        }
+        if (meters.contains(SEARCH_CACHE)) {
+            searchCache(registry, modelSearchCache, "hit", ModelSearchCache::getHits);
+            searchCache(registry, modelSearchCache, "miss", ModelSearchCache::getMisses);
+            searchCache(registry, modelSearchCache, "eviction", ModelSearchCache::getEvictions);
+            searchCache(registry, modelSearchCache, "invalidation", ModelSearchCache::getInvalidations);
+        }
+    }
+
+    /**
+     * @return the start time to pass to the record methods, or 0 without the latency meter
+     */
+    long start() {
+        return rentLatency != null ? System.nanoTime() : 0;
+    }
+
+    void recordRent(RentalOutcome outcome, long start) {
+        record(rentLatency, start);
+        countRent(outcome);
+    }
+
+    void countRent(RentalOutcome outcome) {
+        if (rentOutcomes != null && outcome != RentalOutcome.ROLLED_BACK) {
+            rentOutcomes.get(outcome).increment();
+        }
+    }
+
+    void recordReturn(RentalOutcome outcome, long start) {
+        record(returnLatency, start);
+        countReturn(outcome);
+    }
+
+    void countReturn(RentalOutcome outcome) {
+        if (returnOutcomes != null && outcome != RentalOutcome.ROLLED_BACK) {
+            returnOutcomes.get(outcome).increment();
+        }
+    }
+
+    void recordAdd(boolean added, long start) {
+        record(addLatency, start);
+        if (!added && addConflicts != null) {
+            addConflicts.increment();
+        }
+    }
+
+    void recordSearch(long start) {
+        record(searchLatency, start);
+    }
+
+    private static void record(Timer timer, long start) {
+        if (timer != null) {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static Timer timer(MeterRegistry registry, String operation) {
+        return Timer.builder(LATENCY)
+                .description("Latency of the rental operations")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static void searchCache(MeterRegistry registry, ModelSearchCache modelSearchCache, String result,
+            ToDoubleFunction<ModelSearchCache> count) {
+        FunctionCounter.builder(SEARCH_CACHE, modelSearchCache, count)
+                .description("Model search cache lookups and drops, by result")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * @param conflict the tag of {@link RentalOutcome#CONFLICT}, which depends on the operation
+     */
+    private static Map<RentalOutcome, Counter> outcomes(MeterRegistry registry, String name, String description,
+            String conflict) {
+        Map<RentalOutcome, Counter> outcomes = new EnumMap<>(RentalOutcome.class);
+        outcomes.put(RentalOutcome.SUCCESS, outcome(registry, name, description, "success"));
+        outcomes.put(RentalOutcome.CONFLICT, outcome(registry, name, description, conflict));
+        outcomes.put(RentalOutcome.NOT_FOUND, outcome(registry, name, description, "unknown_registration"));
+        return outcomes;
+    }
+
+    private static Counter outcome(MeterRegistry registry, String name, String description, String outcome) {
+        return Counter.builder(name)
+                .description(description)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.rental;
+
+/**
+ * Outcome of renting or returning one car
+ */
+public enum RentalOutcome {
+    /** The car was rented or returned */
+    SUCCESS,
+    /** The car was already rented (for a rent) or already available (for a return) */
+    CONFLICT,
+    /** No car has this registration number */
+    NOT_FOUND,
+    /** The car was rented or returned, then restored because another car of the same all-or-nothing batch failed */
+    ROLLED_BACK
+}
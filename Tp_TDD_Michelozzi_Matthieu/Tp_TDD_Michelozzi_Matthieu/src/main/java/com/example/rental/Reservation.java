@@ -0,0 +1,36 @@
+package com.example.rental;
+
+import java.time.Instant;
+
+/**
+ * Booking of one car from its start, included, to its end, excluded
+ */
+public class Reservation {
+    private final long id;
+    private final String registrationNumber;
+    private final Instant start;
+    private final Instant end;
+
+    public Reservation(long id, String registrationNumber, Instant start, Instant end) {
+        this.id = id;
+        this.registrationNumber = registrationNumber;
+        this.start = start;
+        this.end = end;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getRegistrationNumber() {
+        return registrationNumber;
+    }
+
+    public Instant getStart() {
+        return start;
+    }
+
+    public Instant getEnd() {
+        return end;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.rental;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.stereotype.Repository;
+
+/**
+ * Reservations of each car, indexed by start time.
+ * <p>
+ * The reservations of a car never overlap, so sorted by start they are sorted by end too: a window is free when
+ * the last reservation starting before its end is over by its start. Checking a window and booking it are
+ * O(log n) in the reservations of the car, whatever the size of the fleet
+ */
+@Repository
+public class ReservationBook {
+
+    private final Map<String, CarReservations> reservationsByCar = new ConcurrentHashMap<>();
+    private final Map<Long, Reservation> reservationsById = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    /**
+     * Book a car if none of its reservations overlaps the window
+     * 
+     * @param registrationNumber the registration number of the car
+     * @param start the start of the window, included
+     * @param end the end of the window, excluded, after the start
+     * @return the reservation, or empty if the window is already taken
+     */
+    public Optional<Reservation> reserve(String registrationNumber, Instant start, Instant end) {
+        if (!end.isAfter(start)) {
+            throw new IllegalArgumentException("The end of a reservation must be after its start");
+        }
+        CarReservations reservations = reservationsByCar.computeIfAbsent(registrationNumber,
+                r -> new CarReservations());
+        reservations.lock.lock();
+        try {
+            if (!reservations.isFree(start, end)) {
+                return Optional.empty();
+            }
+            Reservation reservation = new Reservation(ids.incrementAndGet(), registrationNumber, start, end);
+            reservations.byStart.put(start, reservation);
+            reservationsById.put(reservation.getId(), reservation);
+            return Optional.of(reservation);
+        } finally {
+            reservations.lock.unlock();
+        }
+    }
+
+    /**
+     * @param id the id of the reservation
+     * @return true if the reservation was cancelled, false if there is no such reservation
+     */
+    public boolean cancel(long id) {
+        Reservation reservation = reservationsById.remove(id);
+        if (reservation == null) {
+            return false;
+        }
+        reservationsByCar.get(reservation.getRegistrationNumber()).cancel(reservation);
+        return true;
+    }
+
+    /**
+     * @param registrationNumber the registration number of the car
+     * @param start the start of the window, included
+     * @param end the end of the window, excluded
+     * @return true if no reservation of the car overlaps the window
+     */
+    public boolean isFree(String registrationNumber, Instant start, Instant end) {
+        CarReservations reservations = reservationsByCar.get(registrationNumber);
+        return reservations == null || reservations.isFree(start, end);
+    }
+
+    /**
+     * @param registrationNumber the registration number of the car
+     * @return the reservations of the car in start order
+     */
+    public List<Reservation> findByCar(String registrationNumber) {
+        CarReservations reservations = reservationsByCar.get(registrationNumber);
+        return reservations == null ? List.of() : new ArrayList<>(reservations.byStart.values());
+    }
+
+    /**
+     * Reservations of one car. Reads are lock-free, the lock only makes a check and the booking that follows atomic
+     */
+    private static class CarReservations {
+        private final NavigableMap<Instant, Reservation> byStart = new ConcurrentSkipListMap<>();
+        private final ReentrantLock lock = new ReentrantLock();
+
+        void cancel(Reservation reservation) {
+            byStart.remove(reservation.getStart(), reservation);
+        }
+
+        boolean isFree(Instant start, Instant end) {
+            Map.Entry<Instant, Reservation> last = byStart.lowerEntry(end);
+            return last == null || !last.getValue().getEnd().isAfter(start);
+        }
+    }
+}
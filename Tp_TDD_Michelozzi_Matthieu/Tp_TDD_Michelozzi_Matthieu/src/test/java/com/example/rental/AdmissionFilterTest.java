@@ -0,0 +1,144 @@
+package com.example.rental;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+class AdmissionFilterTest {
+
+    private final CarRentalService carRentalService = mock(CarRentalService.class);
+
+    @Test
+    void rentCar_overTheClientBurst_shouldBeRejectedBeforeTheService() throws Exception {
+        // Given : one token every 10 s
+        MockMvc mockMvc = mockMvc(new AdmissionFilter(0.1, 3, 10, 100, 100, 10, "X-Client-Id", 100));
+        when(carRentalService.rentCar("ABC123")).thenReturn(true);
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(post("/cars/rent/ABC123").header("X-Client-Id", "alice")).andExpect(status().isOk());
+        }
+
+        // When / Then
+        mockMvc.perform(post("/cars/rent/ABC123").header("X-Client-Id", "alice"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"));
+        verify(carRentalService, times(3)).rentCar("ABC123");
+    }
+
+    @Test
+    void overBudgetClient_shouldNotLimitOtherClientsNorReads() throws Exception {
+        // Given
+        MockMvc mockMvc = mockMvc(new AdmissionFilter(0.1, 1, 10, 100, 100, 10, "X-Client-Id", 100));
+        when(carRentalService.getAllCars()).thenReturn(List.of());
+        mockMvc.perform(post("/cars/rent/ABC123").header("X-Client-Id", "alice")).andExpect(status().isOk());
+        mockMvc.perform(post("/cars/rent/ABC123").header("X-Client-Id", "alice"))
+                .andExpect(status().isTooManyRequests());
+
+        // When / Then
+        mockMvc.perform(post("/cars/rent/ABC123").header("X-Client-Id", "bob")).andExpect(status().isOk());
+        mockMvc.perform(get("/cars").header("X-Client-Id", "alice")).andExpect(status().isOk());
+    }
+
+    @Test
+    void rentCar_afterTheRefillInterval_shouldBeAdmittedAgain() throws Exception {
+        // Given : one token every 250 ms, once the first request has warmed the stack up
+        MockMvc mockMvc = mockMvc(new AdmissionFilter(4, 1, 10, 100, 100, 10, "", 100));
+        mockMvc.perform(get("/cars")).andExpect(status().isOk());
+        mockMvc.perform(post("/cars/rent/ABC123")).andExpect(status().isOk());
+        mockMvc.perform(post("/cars/rent/ABC123")).andExpect(status().isTooManyRequests());
+
+        // When
+        Thread.sleep(500);
+
+        // Then
+        mockMvc.perform(post("/cars/rent/ABC123")).andExpect(status().isOk());
+    }
+
+    @Test
+    void rentCar_overTheConcurrencyLimit_shouldBeRejectedWhileOthersAreInProgress() throws Exception {
+        // Given : one rent in progress, blocked in the service
+        MockMvc mockMvc = mockMvc(new AdmissionFilter(1000, 1000, 1, 1000, 1000, 10, "", 100));
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(carRentalService.rentCar("SLOW")).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return true;
+        });
+        CompletableFuture<Void> slow = CompletableFuture.runAsync(() -> {
+            try {
+                mockMvc.perform(post("/cars/rent/SLOW")).andExpect(status().isOk());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(entered.await(10, TimeUnit.SECONDS));
+
+        // When / Then
+        mockMvc.perform(post("/cars/rent/ABC123")).andExpect(status().isTooManyRequests());
+        mockMvc.perform(get("/cars")).andExpect(status().isOk());
+        release.countDown();
+        slow.get(10, TimeUnit.SECONDS);
+        mockMvc.perform(post("/cars/rent/ABC123")).andExpect(status().isOk());
+    }
+
+    @Test
+    void pathsOnlyStartingLikeCars_shouldNotBeFiltered() throws Exception {
+        // Given : alice has no token left
+        MockMvc mockMvc = mockMvc(new AdmissionFilter(0.1, 1, 10, 100, 100, 10, "X-Client-Id", 100));
+        mockMvc.perform(post("/cars/rent/ABC123").header("X-Client-Id", "alice")).andExpect(status().isOk());
+
+        // When / Then
+        mockMvc.perform(post("/carsX").header("X-Client-Id", "alice")).andExpect(status().isNotFound());
+        mockMvc.perform(post("/cars").header("X-Client-Id", "alice")).andExpect(status().isTooManyRequests());
+    }
+
+    @Test
+    void newFilter_withoutAPositiveRateOrBudget_shouldBeRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new AdmissionFilter(0, 1, 10, 100, 100, 10, "", 100));
+        assertThrows(IllegalArgumentException.class, () -> new AdmissionFilter(50, 1, 10, -1, 100, 10, "", 100));
+        assertThrows(IllegalArgumentException.class, () -> new AdmissionFilter(50, 0, 10, 100, 100, 10, "", 100));
+        assertThrows(IllegalArgumentException.class, () -> new AdmissionFilter(50, 1, 10, 100, 100, 10, "", 0));
+    }
+
+    @Test
+    void newClient_overTheClientBound_shouldDropABucketEvenIfNotFull() throws Exception {
+        // Given : room for the bucket of one client, alice, who has no token left
+        MockMvc mockMvc = mockMvc(new AdmissionFilter(0.1, 1, 10, 100, 100, 10, "X-Client-Id", 1));
+        mockMvc.perform(post("/cars/rent/ABC123").header("X-Client-Id", "alice")).andExpect(status().isOk());
+
+        // When
+        mockMvc.perform(post("/cars/rent/ABC123").header("X-Client-Id", "bob")).andExpect(status().isOk());
+
+        // Then : the bucket of alice was dropped for the one of bob, so she starts over with a full one
+        mockMvc.perform(post("/cars/rent/ABC123").header("X-Client-Id", "alice")).andExpect(status().isOk());
+    }
+
+    private MockMvc mockMvc(AdmissionFilter admissionFilter) {
+        CarController carController = new CarController();
+        try {
+            Field field = CarController.class.getDeclaredField("carRentalService");
+            field.setAccessible(true);
+            field.set(carController, carRentalService);
+        } catch (Exception e) {
+            fail("Failed to set up test: " + e.getMessage());
+        }
+        return MockMvcBuilders.standaloneSetup(carController).addFilters(admissionFilter).build();
+    }
+}
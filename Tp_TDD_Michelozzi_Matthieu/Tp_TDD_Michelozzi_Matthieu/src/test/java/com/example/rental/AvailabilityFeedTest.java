@@ -0,0 +1,276 @@
+package com.example.rental;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AvailabilityFeedTest {
+
+    private static final int HISTORY_SIZE = 5;
+    private static final int BUFFER_SIZE = 3;
+
+    private CarRepository carRepository;
+    private AvailabilityFeed availabilityFeed;
+
+    @BeforeEach
+    void setUp() {
+        carRepository = new CarRepository();
+        for (int i = 0; i < 10; i++) {
+            carRepository.addCar(new Car("CAR-" + i, "Toyota", true));
+        }
+        availabilityFeed = new AvailabilityFeed(carRepository, HISTORY_SIZE, BUFFER_SIZE, 2);
+        availabilityFeed.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        availabilityFeed.close();
+    }
+
+    @Test
+    void subscribe_shouldReceiveRentAndReturnInOrder() throws Exception {
+        // Given
+        RecordingSubscriber subscriber = new RecordingSubscriber(null);
+        availabilityFeed.subscribe(null, subscriber);
+
+        // When
+        carRepository.compareAndSetAvailable("CAR-1", true, false);
+        carRepository.compareAndSetAvailable("CAR-2", true, false);
+        carRepository.compareAndSetAvailable("CAR-3", true, false);
+
+        // Then
+        List<AvailabilityChange> changes = subscriber.awaitChanges(3);
+        assertEquals(List.of("CAR-1", "CAR-2", "CAR-3"),
+                changes.stream().map(AvailabilityChange::getRegistrationNumber).toList());
+        assertEquals(List.of(1L, 2L, 3L), changes.stream().map(AvailabilityChange::getSequence).toList());
+        assertFalse(changes.get(0).isAvailable());
+    }
+
+    @Test
+    void subscribe_withSequence_shouldReplayLaterChanges() throws Exception {
+        // Given
+        carRepository.compareAndSetAvailable("CAR-1", true, false);
+        carRepository.compareAndSetAvailable("CAR-2", true, false);
+        carRepository.compareAndSetAvailable("CAR-3", true, false);
+
+        // When
+        RecordingSubscriber subscriber = new RecordingSubscriber(null);
+        availabilityFeed.subscribe(1L, subscriber);
+        carRepository.compareAndSetAvailable("CAR-4", true, false);
+
+        // Then
+        List<AvailabilityChange> changes = subscriber.awaitChanges(3);
+        assertEquals(List.of(2L, 3L, 4L), changes.stream().map(AvailabilityChange::getSequence).toList());
+        assertNull(subscriber.resets.poll());
+    }
+
+    @Test
+    void subscribe_withSequenceNoLongerKept_shouldReset() throws Exception {
+        // Given
+        for (int i = 0; i < HISTORY_SIZE + 1; i++) {
+            carRepository.compareAndSetAvailable("CAR-" + i, true, false);
+        }
+
+        // When
+        RecordingSubscriber subscriber = new RecordingSubscriber(null);
+        availabilityFeed.subscribe(0L, subscriber);
+
+        // Then
+        assertEquals(HISTORY_SIZE + 1, subscriber.resets.poll(10, TimeUnit.SECONDS));
+        assertTrue(subscriber.changes.isEmpty());
+    }
+
+    @Test
+    void slowSubscriber_shouldReceiveOnlyTheLatestChangeOfEachCar() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSubscriber slow = new RecordingSubscriber(release);
+        RecordingSubscriber fast = new RecordingSubscriber(null);
+        availabilityFeed.subscribe(null, slow);
+        availabilityFeed.subscribe(null, fast);
+        carRepository.compareAndSetAvailable("CAR-1", true, false);
+        assertEquals(1, slow.awaitChanges(1).size());
+
+        // When : the slow subscriber is busy while the car is returned, rented and returned again
+        carRepository.compareAndSetAvailable("CAR-1", false, true);
+        carRepository.compareAndSetAvailable("CAR-1", true, false);
+        carRepository.compareAndSetAvailable("CAR-1", false, true);
+        assertEquals(4, fast.awaitSequence(4).getSequence(), "the fast subscriber is not held back");
+        release.countDown();
+
+        // Then
+        List<AvailabilityChange> changes = slow.awaitChanges(1);
+        assertEquals(1, changes.size());
+        assertTrue(changes.get(0).isAvailable());
+        assertEquals(4, changes.get(0).getSequence());
+        assertNull(slow.changes.poll(100, TimeUnit.MILLISECONDS));
+        assertNull(slow.resets.poll());
+    }
+
+    @Test
+    void slowSubscriber_fallingBehindTheHistory_shouldBeReset() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSubscriber slow = new RecordingSubscriber(release);
+        availabilityFeed.subscribe(null, slow);
+        carRepository.compareAndSetAvailable("CAR-1", true, false);
+        slow.awaitChanges(1);
+
+        // When : more changes of the same car than the history keeps
+        for (int i = 0; i < HISTORY_SIZE; i++) {
+            carRepository.compareAndSetAvailable("CAR-1", false, true);
+            carRepository.compareAndSetAvailable("CAR-1", true, false);
+        }
+        release.countDown();
+
+        // Then
+        assertEquals(2 * HISTORY_SIZE + 1, slow.resets.poll(10, TimeUnit.SECONDS));
+        assertNull(slow.changes.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void slowSubscriber_withTooManyPendingCars_shouldBeReset() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSubscriber slow = new RecordingSubscriber(release);
+        availabilityFeed.subscribe(null, slow);
+        carRepository.compareAndSetAvailable("CAR-0", true, false);
+        slow.awaitChanges(1);
+
+        // When
+        for (int i = 1; i <= BUFFER_SIZE + 1; i++) {
+            carRepository.compareAndSetAvailable("CAR-" + i, true, false);
+        }
+        release.countDown();
+
+        // Then
+        assertEquals(BUFFER_SIZE + 2, slow.resets.poll(10, TimeUnit.SECONDS));
+        carRepository.compareAndSetAvailable("CAR-9", true, false);
+        assertNull(slow.changes.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void subscribe_overTheSubscriberCap_shouldBeRefusedUntilOneCancels() {
+        // Given
+        AvailabilityFeed.Subscription first = availabilityFeed.subscribe(null, new RecordingSubscriber(null));
+        availabilityFeed.subscribe(null, new RecordingSubscriber(null));
+
+        // When / Then
+        assertThrows(AvailabilityFeed.TooManySubscribersException.class,
+                () -> availabilityFeed.subscribe(null, new RecordingSubscriber(null)));
+        first.cancel();
+        first.cancel();
+        availabilityFeed.subscribe(null, new RecordingSubscriber(null));
+        assertThrows(AvailabilityFeed.TooManySubscribersException.class,
+                () -> availabilityFeed.subscribe(null, new RecordingSubscriber(null)));
+    }
+
+    @Test
+    void concurrentRentsAndReturns_shouldEndWithTheLatestAvailabilityOfEachCar() throws Exception {
+        // Given : a history keeping every change, so the subscriber is never reset
+        availabilityFeed.close();
+        availabilityFeed = new AvailabilityFeed(carRepository, 8 * 500 * 2, BUFFER_SIZE, 2);
+        availabilityFeed.start();
+        RecordingSubscriber subscriber = new RecordingSubscriber(null);
+        availabilityFeed.subscribe(null, subscriber);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // When : every thread flips the same cars, no more than fit in the buffer
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            tasks.add(executor.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    String registrationNumber = "CAR-" + (i % BUFFER_SIZE);
+                    if (!carRepository.compareAndSetAvailable(registrationNumber, true, false)) {
+                        carRepository.compareAndSetAvailable(registrationNumber, false, true);
+                    }
+                }
+            }));
+        }
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+        executor.shutdown();
+
+        // Then
+        Map<String, AvailabilityChange> latest = new HashMap<>();
+        AvailabilityChange change = subscriber.changes.poll(10, TimeUnit.SECONDS);
+        while (change != null) {
+            AvailabilityChange previous = latest.put(change.getRegistrationNumber(), change);
+            assertTrue(previous == null || previous.getSequence() < change.getSequence());
+            change = subscriber.changes.poll(500, TimeUnit.MILLISECONDS);
+        }
+        assertNull(subscriber.resets.poll());
+        for (int i = 0; i < BUFFER_SIZE; i++) {
+            assertEquals(carRepository.findByRegistrationNumber("CAR-" + i).orElseThrow().isAvailable(),
+                    latest.get("CAR-" + i).isAvailable(), "CAR-" + i);
+        }
+    }
+
+    private static class RecordingSubscriber implements AvailabilitySubscriber {
+        private final BlockingQueue<AvailabilityChange> changes = new LinkedBlockingQueue<>();
+        private final BlockingQueue<Long> resets = new LinkedBlockingQueue<>();
+        private final CountDownLatch release;
+        private boolean blocked;
+
+        RecordingSubscriber(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void onChanges(List<AvailabilityChange> batch) {
+            changes.addAll(batch);
+            // Block after the first batch, until released
+            if (release != null && !blocked) {
+                blocked = true;
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void onReset(long sequence) {
+            resets.add(sequence);
+        }
+
+        AvailabilityChange awaitSequence(long sequence) throws InterruptedException {
+            AvailabilityChange change;
+            do {
+                change = changes.poll(10, TimeUnit.SECONDS);
+            } while (change != null && change.getSequence() < sequence);
+            return change;
+        }
+
+        List<AvailabilityChange> awaitChanges(int count) throws InterruptedException {
+            List<AvailabilityChange> received = new ArrayList<>();
+            while (received.size() < count) {
+                AvailabilityChange change = changes.poll(10, TimeUnit.SECONDS);
+                if (change == null) {
+                    break;
+                }
+                received.add(change);
+            }
+            return received;
+        }
+    }
+}
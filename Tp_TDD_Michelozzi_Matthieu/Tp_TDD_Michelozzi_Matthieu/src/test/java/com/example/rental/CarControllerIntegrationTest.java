@@ -1,25 +1,39 @@
 package com.example.rental;
 
 import java.lang.reflect.Field;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.TreeMap;
 
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 class CarControllerIntegrationTest {
 
     private MockMvc mockMvc;
@@ -40,6 +54,9 @@ class CarControllerIntegrationTest {
             Field field = CarController.class.getDeclaredField("carRentalService");
             field.setAccessible(true);
             field.set(carController, carRentalService);
+            Field mapperField = CarController.class.getDeclaredField("objectMapper");
+            mapperField.setAccessible(true);
+            mapperField.set(carController, new ObjectMapper());
         } catch (Exception e) {
             fail("Failed to set up test: " + e.getMessage());
         }
@@ -68,6 +85,23 @@ class CarControllerIntegrationTest {
         verify(carRentalService).getAllCars();
     }
 
+    @Test
+    void getStatistics_shouldReturnTheFleetCounts() throws Exception {
+        // Given
+        TreeMap<String, Long> rentedByModel = new TreeMap<>();
+        rentedByModel.put("honda", 1L);
+        when(carRentalService.getStatistics()).thenReturn(new FleetStatistics(2, 1, rentedByModel));
+
+        // When / Then
+        mockMvc.perform(get("/cars/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size").value(2))
+                .andExpect(jsonPath("$.available").value(1))
+                .andExpect(jsonPath("$.rented").value(1))
+                .andExpect(jsonPath("$.rentedByModel.honda").value(1));
+        verify(carRentalService, never()).getAllCars();
+    }
+
     @Test
     void rentCar_whenCarIsAvailable_shouldReturnTrue() throws Exception {
         when(carRentalService.rentCar("ABC123")).thenReturn(true);
@@ -99,4 +133,267 @@ class CarControllerIntegrationTest {
 
         verify(carRentalService).returnCar("ABC123");
     }
+
+    @Test
+    void addCar_retriedWithSameIdempotencyKey_shouldReplayTheCreation() throws Exception {
+        setIdempotencyStore();
+        when(carRentalService.addCar(any(Car.class))).thenReturn(true, false);
+        String body = "{\"registrationNumber\":\"DEF456\",\"model\":\"Ford\",\"available\":true}";
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/cars/add")
+                    .header(CarController.IDEMPOTENCY_KEY_HEADER, "add-1")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(body))
+                    .andExpect(status().isCreated())
+                    .andExpect(content().string("true"));
+        }
+
+        verify(carRentalService, times(1)).addCar(any(Car.class));
+    }
+
+    @Test
+    void rentCar_withIdempotencyKeyOfAnotherCar_shouldReturnUnprocessable() throws Exception {
+        setIdempotencyStore();
+        when(carRentalService.rentCar("ABC123")).thenReturn(true);
+        mockMvc.perform(post("/cars/rent/ABC123").header(CarController.IDEMPOTENCY_KEY_HEADER, "rent-1"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/cars/rent/XYZ789").header(CarController.IDEMPOTENCY_KEY_HEADER, "rent-1"))
+                .andExpect(status().isUnprocessableEntity());
+
+        verify(carRentalService, never()).rentCar("XYZ789");
+    }
+
+    @Test
+    void reserveCar_whenWindowIsFree_shouldReturnCreatedReservation() throws Exception {
+        Instant start = Instant.parse("2025-06-01T10:00:00Z");
+        Instant end = Instant.parse("2025-06-01T12:00:00Z");
+        when(carRentalService.reserveCar("ABC123", start, end))
+                .thenReturn(Optional.of(new Reservation(7, "ABC123", start, end)));
+
+        mockMvc.perform(post("/cars/reserve/ABC123")
+                .param("start", "2025-06-01T10:00:00Z")
+                .param("end", "2025-06-01T12:00:00Z"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value(7))
+                .andExpect(jsonPath("$.registrationNumber").value("ABC123"));
+    }
+
+    @Test
+    void reserveCar_whenWindowIsTaken_shouldReturnConflict() throws Exception {
+        when(carRentalService.reserveCar(eq("ABC123"), any(), any())).thenReturn(Optional.empty());
+
+        mockMvc.perform(post("/cars/reserve/ABC123")
+                .param("start", "2025-06-01T10:00:00Z")
+                .param("end", "2025-06-01T12:00:00Z"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void getFreeCars_whenWindowEndsBeforeItStarts_shouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/cars/free")
+                .param("model", "Toyota")
+                .param("start", "2025-06-01T12:00:00Z")
+                .param("end", "2025-06-01T10:00:00Z"))
+                .andExpect(status().isBadRequest());
+
+        verify(carRentalService, never()).getCarsFreeBetween(any(), any(), any());
+    }
+
+    @Test
+    void getAllCars_withLimit_shouldReturnPageAndNextCursor() throws Exception {
+        when(carRentalService.getCarPage(null, null, null, 1))
+                .thenReturn(new CarPage(Arrays.asList(availableCar), "ABC123"));
+
+        mockMvc.perform(get("/cars")
+                .param("limit", "1")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(CarController.NEXT_CURSOR_HEADER, CarController.encodeCursor("ABC123")))
+                .andExpect(jsonPath("$[0].registrationNumber").value("ABC123"));
+
+        verify(carRentalService, never()).getAllCars();
+    }
+
+    @Test
+    void getAllCars_withCursorOnLastPage_shouldNotReturnNextCursor() throws Exception {
+        when(carRentalService.getCarPage(null, false, "ABC123", 1))
+                .thenReturn(new CarPage(Arrays.asList(unavailableCar), null));
+
+        mockMvc.perform(get("/cars")
+                .param("limit", "1")
+                .param("available", "false")
+                .param("after", CarController.encodeCursor("ABC123"))
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(CarController.NEXT_CURSOR_HEADER))
+                .andExpect(jsonPath("$[0].registrationNumber").value("XYZ789"));
+    }
+
+    @Test
+    void getAllCars_withInvalidLimit_shouldReturnBadRequest() throws Exception {
+        mockMvc.perform(get("/cars")
+                .param("limit", "0"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/cars")
+                .param("limit", "10")
+                .param("after", "not a cursor!"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void searchCarsByModel_withLimit_shouldReturnPage() throws Exception {
+        when(carRentalService.getCarPage("Toy*", null, null, 5))
+                .thenReturn(new CarPage(Arrays.asList(availableCar), null));
+
+        mockMvc.perform(get("/cars/search")
+                .param("model", "Toy*")
+                .param("limit", "5")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].model").value("Toyota"));
+
+        verify(carRentalService, never()).getCarsByModel("Toy*");
+    }
+
+    @Test
+    void getAllCars_withMatchingIfNoneMatch_shouldReturnNotModifiedWithoutReadingCars() throws Exception {
+        when(carRentalService.getVersion(null)).thenReturn(7L);
+        when(carRentalService.getAllCars()).thenReturn(carList);
+        String etag = mockMvc.perform(get("/cars"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/cars").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(content().string(""));
+
+        verify(carRentalService).getAllCars();
+    }
+
+    @Test
+    void getAllCars_whenFleetChanged_shouldReturnCarsWithNewETag() throws Exception {
+        when(carRentalService.getVersion(null)).thenReturn(7L, 8L);
+        when(carRentalService.getAllCars()).thenReturn(carList);
+        String etag = mockMvc.perform(get("/cars"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        String newEtag = mockMvc.perform(get("/cars").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].registrationNumber").value("ABC123"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        assertTrue(newEtag.startsWith("\"") && !newEtag.equals(etag), newEtag);
+    }
+
+    @Test
+    void searchCarsByModel_withMatchingIfNoneMatch_shouldUseTheModelVersion() throws Exception {
+        when(carRentalService.getVersion("Toy*")).thenReturn(3L);
+        when(carRentalService.getCarsByModel("Toy*")).thenReturn(Arrays.asList(availableCar));
+        String etag = mockMvc.perform(get("/cars/search").param("model", "Toy*"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/cars/search").param("model", "Toy*").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        verify(carRentalService).getCarsByModel("Toy*");
+        verify(carRentalService, never()).getVersion(null);
+    }
+
+    @Test
+    void exportCars_shouldStreamOneCarPerLine() throws Exception {
+        when(carRentalService.iterateCars("Toy*", true)).thenReturn(Arrays.asList(availableCar).iterator());
+
+        MvcResult result = mockMvc.perform(get("/cars/export")
+                .param("model", "Toy*")
+                .param("available", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", CarController.NDJSON))
+                .andExpect(content().string("{\"registrationNumber\":\"ABC123\",\"model\":\"Toyota\",\"available\":true}\n"));
+    }
+
+    @Test
+    void exportCars_withoutFilters_shouldStreamWholeFleet() throws Exception {
+        when(carRentalService.iterateCars(null, null)).thenReturn(carList.iterator());
+
+        MvcResult result = mockMvc.perform(get("/cars/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(
+                        "{\"registrationNumber\":\"ABC123\",\"model\":\"Toyota\",\"available\":true}\n"
+                        + "{\"registrationNumber\":\"XYZ789\",\"model\":\"Honda\",\"available\":false}\n"));
+    }
+
+    @Test
+    void streamAvailabilityChanges_shouldSendChangesAsServerSentEvents() throws Exception {
+        CarRepository carRepository = new CarRepository();
+        carRepository.addCar(new Car("ABC123", "Toyota", true));
+        AvailabilityFeed availabilityFeed = startFeed(carRepository, 10);
+        carRepository.compareAndSetAvailable("ABC123", true, false);
+
+        MvcResult result = mockMvc.perform(get("/cars/events").param("since", "0"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String events = awaitContent(result);
+        assertTrue(events.contains("id:1\nevent:availability\n"), events);
+        assertTrue(events.contains("\"registrationNumber\":\"ABC123\""), events);
+        assertTrue(events.contains("\"available\":false"), events);
+        availabilityFeed.close();
+    }
+
+    @Test
+    void streamAvailabilityChanges_fromSequenceNoLongerKept_shouldSendResetAndComplete() throws Exception {
+        CarRepository carRepository = new CarRepository();
+        carRepository.addCar(new Car("ABC123", "Toyota", true));
+        AvailabilityFeed availabilityFeed = startFeed(carRepository, 2);
+        carRepository.compareAndSetAvailable("ABC123", true, false);
+        carRepository.compareAndSetAvailable("ABC123", false, true);
+        carRepository.compareAndSetAvailable("ABC123", true, false);
+
+        MvcResult result = mockMvc.perform(get("/cars/events").header("Last-Event-ID", "0"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // The reset is sent from the feed thread
+        result.getAsyncResult(10_000);
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("event:reset\ndata:3\n\n"));
+        availabilityFeed.close();
+    }
+
+    private void setIdempotencyStore() throws Exception {
+        Field field = CarController.class.getDeclaredField("idempotencyStore");
+        field.setAccessible(true);
+        field.set(carController, new IdempotencyStore(60_000, 100));
+    }
+
+    private AvailabilityFeed startFeed(CarRepository carRepository, int historySize) throws Exception {
+        AvailabilityFeed availabilityFeed = new AvailabilityFeed(carRepository, historySize, 100, 10);
+        availabilityFeed.start();
+        Field field = CarController.class.getDeclaredField("availabilityFeed");
+        field.setAccessible(true);
+        field.set(carController, availabilityFeed);
+        return availabilityFeed;
+    }
+
+    private static String awaitContent(MvcResult result) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!result.getResponse().getContentAsString().endsWith("\n\n") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        return result.getResponse().getContentAsString();
+    }
 }
@@ -1,13 +1,18 @@
 package com.example.rental;
 
 import java.lang.reflect.Field;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.fail;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.springframework.http.MediaType;
@@ -26,11 +31,13 @@ class CarControllerTDDTest {
     private MockMvc mockMvc;
     private CarRentalService carRentalService;
     private CarController carController;
+    private CarImporter carImporter;
     private ObjectMapper objectMapper;
 
     @BeforeEach
     void setUp() {
         carRentalService = mock(CarRentalService.class);
+        carImporter = mock(CarImporter.class);
         objectMapper = new ObjectMapper();
         
         carController = new CarController();
@@ -38,6 +45,9 @@ class CarControllerTDDTest {
             Field field = CarController.class.getDeclaredField("carRentalService");
             field.setAccessible(true);
             field.set(carController, carRentalService);
+            Field importerField = CarController.class.getDeclaredField("carImporter");
+            importerField.setAccessible(true);
+            importerField.set(carController, carImporter);
         } catch (Exception e) {
             fail("Failed to set up test: " + e.getMessage());
         }
@@ -104,4 +114,64 @@ class CarControllerTDDTest {
 
         verify(carRentalService).getCarsByModel("BMW");
     }
+
+    @Test
+    void rentCars_shouldReturnOutcomeForEachCar() throws Exception {
+        Map<String, RentalOutcome> outcomes = new LinkedHashMap<>();
+        outcomes.put("ABC123", RentalOutcome.SUCCESS);
+        outcomes.put("XYZ789", RentalOutcome.CONFLICT);
+        when(carRentalService.rentCars(Arrays.asList("ABC123", "XYZ789"), false)).thenReturn(outcomes);
+
+        mockMvc.perform(post("/cars/rent/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[\"ABC123\",\"XYZ789\"]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.ABC123").value("SUCCESS"))
+                .andExpect(jsonPath("$.XYZ789").value("CONFLICT"));
+
+        verify(carRentalService, never()).rentCar(any());
+    }
+
+    @Test
+    void returnCars_withAllOrNothing_shouldPassModeToService() throws Exception {
+        when(carRentalService.returnCars(Arrays.asList("ABC123"), true))
+                .thenReturn(Collections.singletonMap("ABC123", RentalOutcome.SUCCESS));
+
+        mockMvc.perform(post("/cars/return/batch")
+                .param("allOrNothing", "true")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[\"ABC123\"]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.ABC123").value("SUCCESS"));
+
+        verify(carRentalService).returnCars(eq(Arrays.asList("ABC123")), eq(true));
+    }
+
+    @Test
+    void importCars_withCsvBody_shouldReturnCounts() throws Exception {
+        when(carImporter.importCsv(any())).thenReturn(new ImportResult(2, 1, 0));
+
+        mockMvc.perform(post("/cars/import")
+                .contentType("text/csv")
+                .content("DEF456,Ford,true\nGHI789,Honda,false\nABC123,Toyota,true\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(2))
+                .andExpect(jsonPath("$.conflicts").value(1))
+                .andExpect(jsonPath("$.rejected").value(0));
+
+        verify(carImporter).importCsv(any());
+    }
+
+    @Test
+    void importCars_withNdjsonBody_shouldReturnCounts() throws Exception {
+        when(carImporter.importNdjson(any())).thenReturn(new ImportResult(1, 0, 0));
+
+        mockMvc.perform(post("/cars/import")
+                .contentType("application/x-ndjson")
+                .content("{\"registrationNumber\":\"DEF456\",\"model\":\"Ford\",\"available\":true}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(1));
+
+        verify(carImporter).importNdjson(any());
+    }
 }
@@ -0,0 +1,134 @@
+package com.example.rental;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Field;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+class CarImporterTest {
+
+    private CarRepository carRepository;
+    private CarImporter carImporter;
+
+    @BeforeEach
+    void setUp() {
+        carRepository = new CarRepository();
+        CarRentalService carRentalService = new CarRentalService();
+        carImporter = new CarImporter();
+        try {
+            inject(CarRentalService.class, carRentalService, "carRepository", carRepository);
+            inject(CarImporter.class, carImporter, "carRentalService", carRentalService);
+            inject(CarImporter.class, carImporter, "objectMapper", Jackson2ObjectMapperBuilder.json().build());
+        } catch (Exception e) {
+            fail("Failed to set up test: " + e.getMessage());
+        }
+        carRepository.addCar(new Car("ABC123", "Toyota", true));
+    }
+
+    @Test
+    void importCsv_shouldCountAcceptedConflictingAndRejectedRows() throws Exception {
+        // Given
+        String csv = "registrationNumber,model,available\n"
+                + "DEF456,Ford,true\n"
+                + "ABC123,Toyota,false\n"
+                + "\n"
+                + "GHI789,Honda,false\n"
+                + "DEF456,Ford,true\n"
+                + "broken row\n"
+                + "JKL012,Tesla,maybe\n";
+
+        // When
+        ImportResult result = carImporter.importCsv(new StringReader(csv));
+
+        // Then
+        assertEquals(2, result.getAccepted());
+        assertEquals(2, result.getConflicts());
+        assertEquals(2, result.getRejected());
+        assertTrue(carRepository.findByRegistrationNumber("ABC123").get().isAvailable());
+        assertFalse(carRepository.findByRegistrationNumber("GHI789").get().isAvailable());
+    }
+
+    @Test
+    void importNdjson_shouldCountAcceptedConflictingAndRejectedRows() throws Exception {
+        // Given
+        String ndjson = "{\"registrationNumber\":\"DEF456\",\"model\":\"Ford\",\"available\":true}\n"
+                + "{\"registrationNumber\":\"ABC123\",\"model\":\"Toyota\",\"available\":false}\n"
+                + "{not json}\n";
+
+        // When
+        ImportResult result = carImporter.importNdjson(new StringReader(ndjson));
+
+        // Then
+        assertEquals(1, result.getAccepted());
+        assertEquals(1, result.getConflicts());
+        assertEquals(1, result.getRejected());
+        assertEquals("Ford", carRepository.findByRegistrationNumber("DEF456").get().getModel());
+    }
+
+    /**
+     * Wall-clock test, only run with mvn -Pperf test
+     */
+    @Test
+    @Tag("perf")
+    void importCsv_shouldImportOneMillionRows() {
+        int rows = 1_000_000;
+
+        ImportResult result = assertTimeoutPreemptively(Duration.ofSeconds(120),
+                () -> carImporter.importCsv(new GeneratedCsvReader(rows)));
+
+        assertEquals(rows, result.getAccepted());
+        assertEquals(0, result.getConflicts());
+        assertEquals(rows + 1, carRepository.getAllCars().size());
+    }
+
+    private static <T> void inject(Class<T> type, T target, String fieldName, Object value) throws Exception {
+        Field field = type.getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    /**
+     * Produces CSV rows on the fly so the test input is never held in memory
+     */
+    private static class GeneratedCsvReader extends Reader {
+        private final int rows;
+        private int row;
+        private String current = "";
+        private int position;
+
+        GeneratedCsvReader(int rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position == current.length()) {
+                if (row == rows) {
+                    return -1;
+                }
+                current = "IMP-" + row + ",Model" + (row % 50) + "," + (row % 3 != 0) + "\n";
+                position = 0;
+                row++;
+            }
+            int count = Math.min(length, current.length() - position);
+            current.getChars(position, position + count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+            // Nothing to release
+        }
+    }
+}
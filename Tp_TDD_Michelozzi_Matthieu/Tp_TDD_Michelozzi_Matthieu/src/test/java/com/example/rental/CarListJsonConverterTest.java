@@ -0,0 +1,142 @@
+package com.example.rental;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class CarListJsonConverterTest {
+
+    /** Built like the server's */
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final CarListJsonConverter converter = new CarListJsonConverter(objectMapper);
+
+    @Test
+    void write_shouldWriteTheSameBytesAsJackson() throws Exception {
+        // Given : strings Jackson escapes, non-ASCII characters and a car without a model
+        List<Car> cars = new ArrayList<>(List.of(new Car("ABC123", "Toyota", true), new Car("XYZ789", null, false),
+                new Car("Q\"U\\O\nTE", "Tab\tand\u0001control", true), new Car("ÉTÉ-🚗", "Citroën «C4»", false),
+                new Car("</script>", "", true)));
+
+        // When
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        converter.write(cars, out);
+
+        // Then
+        assertArrayEquals(objectMapper.writeValueAsBytes(cars), out.toByteArray());
+        out.reset();
+        converter.write(List.of(), out);
+        assertArrayEquals(objectMapper.writeValueAsBytes(List.of()), out.toByteArray());
+    }
+
+    @Test
+    void write_shouldEncodeEachCarOnceAcrossAvailabilityChanges() throws Exception {
+        // Given
+        Car car = new Car("ABC123", "Toyota", true);
+        converter.write(List.of(car), new ByteArrayOutputStream());
+
+        // When
+        Car rented = car.withAvailable(false);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        converter.write(List.of(rented), out);
+
+        // Then
+        assertSame(car.jsonPrefix(), rented.jsonPrefix());
+        assertArrayEquals(objectMapper.writeValueAsBytes(List.of(rented)), out.toByteArray());
+    }
+
+    @Test
+    void canWrite_shouldOnlyAcceptListsOfCars() {
+        assertTrue(converter.canWrite(new ParameterizedTypeReference<List<Car>>() {
+        }.getType(), List.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canWrite(new ParameterizedTypeReference<List<String>>() {
+        }.getType(), List.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canWrite(new ParameterizedTypeReference<Map<String, Car>>() {
+        }.getType(), Map.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canWrite(new ParameterizedTypeReference<Set<Car>>() {
+        }.getType(), Set.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canWrite(List.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canRead(new ParameterizedTypeReference<List<Car>>() {
+        }.getType(), null, MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void columnarStorage_shouldLeaveCarsToJackson() {
+        // Given : every read of a columnar repository builds new cars, which would be encoded again each time
+        CarListJsonConverter columnarConverter = new CarListJsonConverter(objectMapper,
+                CarRepository.Storage.COLUMNAR);
+
+        // When / Then
+        assertFalse(columnarConverter.canWrite(new ParameterizedTypeReference<List<Car>>() {
+        }.getType(), List.class, MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void mapperWritingCarsAnotherWay_shouldLeaveThemToJackson() {
+        // Given
+        ObjectMapper sorted = Jackson2ObjectMapperBuilder.json()
+                .featuresToEnable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+                .featuresToDisable(MapperFeature.SORT_CREATOR_PROPERTIES_FIRST)
+                .build();
+
+        ObjectMapper indented = Jackson2ObjectMapperBuilder.json().indentOutput(true).build();
+
+        // When
+        CarListJsonConverter sortedConverter = new CarListJsonConverter(sorted);
+        CarListJsonConverter indentedConverter = new CarListJsonConverter(indented);
+
+        // Then
+        assertFalse(sortedConverter.canWrite(new ParameterizedTypeReference<List<Car>>() {
+        }.getType(), List.class, MediaType.APPLICATION_JSON));
+        assertFalse(indentedConverter.canWrite(new ParameterizedTypeReference<List<Car>>() {
+        }.getType(), List.class, MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void getAllCars_shouldSendTheSameBodyAsJackson() throws Exception {
+        // Given
+        CarRentalService carRentalService = mock(CarRentalService.class);
+        List<Car> cars = List.of(new Car("ABC123", "Toyota", true), new Car("XYZ789", "Honda", false));
+        when(carRentalService.getAllCars()).thenReturn(cars);
+        CarController carController = new CarController();
+        try {
+            Field field = CarController.class.getDeclaredField("carRentalService");
+            field.setAccessible(true);
+            field.set(carController, carRentalService);
+        } catch (Exception e) {
+            fail("Failed to set up test: " + e.getMessage());
+        }
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(carController)
+                .setMessageConverters(converter, new MappingJackson2HttpMessageConverter(objectMapper))
+                .build();
+
+        // When / Then
+        mockMvc.perform(get("/cars").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().bytes(objectMapper.writeValueAsBytes(cars)));
+    }
+}
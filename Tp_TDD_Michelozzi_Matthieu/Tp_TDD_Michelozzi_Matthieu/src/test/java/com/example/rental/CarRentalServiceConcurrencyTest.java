@@ -0,0 +1,156 @@
+package com.example.rental;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CarRentalServiceConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int ROUNDS = 500;
+
+    private CarRepository carRepository;
+    private CarRentalService carRentalService;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        carRepository = new CarRepository();
+        carRentalService = new CarRentalService();
+        try {
+            Field field = CarRentalService.class.getDeclaredField("carRepository");
+            field.setAccessible(true);
+            field.set(carRentalService, carRepository);
+        } catch (Exception e) {
+            fail("Failed to set repository: " + e.getMessage());
+        }
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void rentCar_whenManyClientsRentTheSameCar_shouldHaveExactlyOneWinner() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            // Given
+            String registrationNumber = "RACE-" + round;
+            carRentalService.addCar(new Car(registrationNumber, "Toyota", true));
+
+            // When
+            int winners = race(() -> carRentalService.rentCar(registrationNumber));
+
+            // Then
+            assertEquals(1, winners, "round " + round);
+            assertFalse(carRepository.findByRegistrationNumber(registrationNumber).get().isAvailable());
+        }
+    }
+
+    @Test
+    void addCar_whenManyClientsAddTheSameCar_shouldHaveExactlyOneWinner() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            // Given
+            String registrationNumber = "ADD-RACE-" + round;
+
+            // When
+            int winners = race(() -> carRentalService.addCar(new Car(registrationNumber, "Toyota", true)));
+
+            // Then
+            assertEquals(1, winners, "round " + round);
+        }
+    }
+
+    @Test
+    void rentAndReturn_whenInterleaved_shouldNeverGrantTheSameCarTwice() throws Exception {
+        // Given
+        String registrationNumber = "SHARED";
+        carRentalService.addCar(new Car(registrationNumber, "Honda", true));
+        AtomicInteger currentlyRented = new AtomicInteger();
+        AtomicInteger violations = new AtomicInteger();
+
+        // When : every client rents, holds and returns the same car many times
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < ROUNDS; i++) {
+                    if (carRentalService.rentCar(registrationNumber)) {
+                        if (currentlyRented.incrementAndGet() != 1) {
+                            violations.incrementAndGet();
+                        }
+                        currentlyRented.decrementAndGet();
+                        carRentalService.returnCar(registrationNumber);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+
+        // Then
+        assertEquals(0, violations.get());
+        assertTrue(carRepository.findByRegistrationNumber(registrationNumber).get().isAvailable());
+    }
+
+    @Test
+    void rentCar_whileCarsAreAdded_shouldNotFail() throws Exception {
+        // When : half the clients add cars while the other half rent them
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int client = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < ROUNDS; i++) {
+                    if (client % 2 == 0) {
+                        carRentalService.addCar(new Car("ADD-" + client + "-" + i, "Ford", true));
+                    } else {
+                        carRentalService.rentCar("ADD-" + (client - 1) + "-" + i);
+                        carRentalService.getAllCars();
+                    }
+                }
+            }));
+        }
+
+        // Then : no ConcurrentModificationException and every car is present
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        assertEquals(THREADS / 2 * ROUNDS, carRentalService.getAllCars().size());
+    }
+
+    private int race(Callable<Boolean> action) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return action.call();
+            }));
+        }
+        start.countDown();
+        int winners = 0;
+        for (Future<Boolean> future : futures) {
+            if (future.get(10, TimeUnit.SECONDS)) {
+                winners++;
+            }
+        }
+        return winners;
+    }
+}
@@ -1,7 +1,5 @@
 package com.example.rental;
 
-import java.util.Optional;
-
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -10,7 +8,6 @@ import org.junit.jupiter.api.Test;
 import static org.mockito.ArgumentMatchers.any;
 import org.mockito.InOrder;
 import org.mockito.InjectMocks;
-import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -36,53 +33,52 @@ class CarRentalServiceSpyTest {
         availableCar = new Car("ABC123", "Toyota", true);
         unavailableCar = new Car("XYZ789", "Honda", false);
         
-        doReturn(Optional.of(availableCar)).when(carRepository).findByRegistrationNumber("ABC123");
-        doReturn(Optional.of(unavailableCar)).when(carRepository).findByRegistrationNumber("XYZ789");
-        doReturn(Optional.empty()).when(carRepository).findByRegistrationNumber("NON_EXISTENT");
+        carRepository.addCar(availableCar);
+        carRepository.addCar(unavailableCar);
     }
 
     @Test
-    void rentCar_whenCarIsAvailable_shouldCallUpdateCar() {
+    void rentCar_whenCarIsAvailable_shouldSwitchAvailabilityInRepository() {
         boolean result = carRentalService.rentCar("ABC123");
         
         assertTrue(result);
-        assertFalse(availableCar.isAvailable());
-        verify(carRepository).findByRegistrationNumber("ABC123");
-        verify(carRepository).updateCar(availableCar);
+        assertFalse(carRepository.findByRegistrationNumber("ABC123").get().isAvailable());
+        verify(carRepository).compareAndSetAvailable("ABC123", true, false);
+        verify(carRepository, never()).updateCar(any(Car.class));
     }
 
     @Test
-    void rentCar_whenCarIsNotAvailable_shouldNotCallUpdateCar() {
+    void rentCar_whenCarIsNotAvailable_shouldNotChangeRepository() {
         boolean result = carRentalService.rentCar("XYZ789");
         
         assertFalse(result);
-        verify(carRepository).findByRegistrationNumber("XYZ789");
-        verify(carRepository, never()).updateCar(any(Car.class));
+        assertFalse(carRepository.findByRegistrationNumber("XYZ789").get().isAvailable());
+        verify(carRepository).compareAndSetAvailable("XYZ789", true, false);
     }
 
     @Test
-    void rentCar_whenCarDoesNotExist_shouldNotCallUpdateCar() {
+    void rentCar_whenCarDoesNotExist_shouldNotChangeRepository() {
         boolean result = carRentalService.rentCar("NON_EXISTENT");
         
         assertFalse(result);
-        verify(carRepository).findByRegistrationNumber("NON_EXISTENT");
-        verify(carRepository, never()).updateCar(any(Car.class));
+        assertFalse(carRepository.findByRegistrationNumber("NON_EXISTENT").isPresent());
+        verify(carRepository).compareAndSetAvailable("NON_EXISTENT", true, false);
     }
 
     @Test
-    void returnCar_whenCarExists_shouldCallUpdateCar() {
+    void returnCar_whenCarExists_shouldSwitchAvailabilityInRepository() {
         carRentalService.returnCar("XYZ789");
         
-        assertTrue(unavailableCar.isAvailable());
-        verify(carRepository).findByRegistrationNumber("XYZ789");
-        verify(carRepository).updateCar(unavailableCar);
+        assertTrue(carRepository.findByRegistrationNumber("XYZ789").get().isAvailable());
+        assertFalse(unavailableCar.isAvailable(), "cars are immutable snapshots");
+        verify(carRepository).compareAndSetAvailable("XYZ789", false, true);
     }
 
     @Test
-    void returnCar_whenCarDoesNotExist_shouldNotCallUpdateCar() {
+    void returnCar_whenCarDoesNotExist_shouldNotChangeRepository() {
         carRentalService.returnCar("NON_EXISTENT");
         
-        verify(carRepository).findByRegistrationNumber("NON_EXISTENT");
+        verify(carRepository).compareAndSetAvailable("NON_EXISTENT", false, true);
         verify(carRepository, never()).updateCar(any(Car.class));
     }
 
@@ -105,7 +101,7 @@ class CarRentalServiceSpyTest {
         service.rentCar("TEST123");
         
         InOrder inOrder = inOrder(orderedSpy);
-        inOrder.verify(orderedSpy).findByRegistrationNumber("TEST123");
-        inOrder.verify(orderedSpy).updateCar(any(Car.class));
+        inOrder.verify(orderedSpy).addCar(testCar);
+        inOrder.verify(orderedSpy).compareAndSetAvailable("TEST123", true, false);
     }
 }
@@ -1,5 +1,7 @@
 package com.example.rental;
 
+import java.lang.reflect.Field;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -8,12 +10,14 @@ import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.mockito.ArgumentMatchers.any;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.mockito.MockitoAnnotations;
@@ -33,6 +37,16 @@ class CarRentalServiceTDDTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        try {
+            Field field = CarRentalService.class.getDeclaredField("modelSearchCache");
+            field.setAccessible(true);
+            field.set(carRentalService, new ModelSearchCache(carRepository, 10));
+            Field reservationField = CarRentalService.class.getDeclaredField("reservationBook");
+            reservationField.setAccessible(true);
+            reservationField.set(carRentalService, new ReservationBook());
+        } catch (Exception e) {
+            fail("Failed to set cache: " + e.getMessage());
+        }
         
         toyotaCar = new Car("ABC123", "Toyota", true);
         hondaCar = new Car("XYZ789", "Honda", false);
@@ -42,46 +56,97 @@ class CarRentalServiceTDDTest {
     
     @Test
     void addCar_whenRegistrationNumberIsUnique_shouldAddCar() {
-        when(carRepository.findByRegistrationNumber("DEF456")).thenReturn(Optional.empty());
+        when(carRepository.addCar(fordCar)).thenReturn(true);
         
         boolean result = carRentalService.addCar(fordCar);
         
         assertTrue(result);
-        verify(carRepository).findByRegistrationNumber("DEF456");
         verify(carRepository).addCar(fordCar);
     }
     
     @Test
     void addCar_whenRegistrationNumberExists_shouldNotAddCar() {
-        when(carRepository.findByRegistrationNumber("ABC123")).thenReturn(Optional.of(toyotaCar));
+        Car duplicate = new Car("ABC123", "Toyota", true);
+        when(carRepository.addCar(duplicate)).thenReturn(false);
         
-        boolean result = carRentalService.addCar(new Car("ABC123", "Toyota", true));
+        boolean result = carRentalService.addCar(duplicate);
         
         assertFalse(result);
-        verify(carRepository).findByRegistrationNumber("ABC123");
-        verify(carRepository, never()).addCar(any(Car.class));
+        verify(carRepository).addCar(duplicate);
+        verify(carRepository, never()).findByRegistrationNumber(any());
     }
     
     
     @Test
     void getCarsByModel_whenModelExists_shouldReturnMatchingCars() {
         List<Car> toyotaCars = Collections.singletonList(toyotaCar);
-        when(carRepository.getAllCars()).thenReturn(Arrays.asList(toyotaCar, hondaCar, fordCar));
+        when(carRepository.findByModel("Toyota")).thenReturn(toyotaCars);
         
         List<Car> result = carRentalService.getCarsByModel("Toyota");
         
         assertEquals(1, result.size());
         assertEquals("Toyota", result.get(0).getModel());
-        verify(carRepository).getAllCars();
+        verify(carRepository).findByModel("Toyota");
+        verify(carRepository, never()).getAllCars();
     }
     
     @Test
     void getCarsByModel_whenModelDoesNotExist_shouldReturnEmptyList() {
-        when(carRepository.getAllCars()).thenReturn(Arrays.asList(toyotaCar, hondaCar, fordCar));
+        when(carRepository.findByModel("BMW")).thenReturn(Collections.emptyList());
         
         List<Car> result = carRentalService.getCarsByModel("BMW");
         
         assertTrue(result.isEmpty());
-        verify(carRepository).getAllCars();
+        verify(carRepository).findByModel("BMW");
+        verify(carRepository, never()).getAllCars();
+    }
+
+    @Test
+    void getCarsByModel_whenModelEndsWithWildcard_shouldSearchByPrefix() {
+        when(carRepository.findByModelPrefix("Ho")).thenReturn(Arrays.asList(hondaCar));
+        
+        List<Car> result = carRentalService.getCarsByModel("Ho*");
+        
+        assertEquals(1, result.size());
+        assertEquals("Honda", result.get(0).getModel());
+        verify(carRepository).findByModelPrefix("Ho");
+        verify(carRepository, never()).findByModel(any());
+    }
+
+    @Test
+    void getCarsByModel_whenSearchedTwice_shouldReadRepositoryOnce() {
+        when(carRepository.findByModel("Toyota")).thenReturn(Collections.singletonList(toyotaCar));
+        
+        List<Car> first = carRentalService.getCarsByModel("Toyota");
+        List<Car> second = carRentalService.getCarsByModel("TOYOTA");
+        
+        assertEquals(first, second);
+        verify(carRepository, times(1)).findByModel(any());
+    }
+
+    @Test
+    void getCarsFreeBetween_shouldSkipCarsReservedDuringTheWindow() {
+        Car otherToyota = new Car("TOY002", "Toyota", true);
+        Instant start = Instant.parse("2025-06-01T10:00:00Z");
+        Instant end = Instant.parse("2025-06-01T12:00:00Z");
+        when(carRepository.findByRegistrationNumber("ABC123")).thenReturn(Optional.of(toyotaCar));
+        when(carRepository.findByModel("Toyota")).thenReturn(Arrays.asList(toyotaCar, otherToyota));
+        carRentalService.reserveCar("ABC123", start.plusSeconds(3600), end.plusSeconds(3600));
+        
+        List<Car> free = carRentalService.getCarsFreeBetween("Toyota", start, end);
+        List<Car> freeAfter = carRentalService.getCarsFreeBetween("Toyota", end.plusSeconds(3600), end.plusSeconds(7200));
+        
+        assertEquals(Arrays.asList(otherToyota), free);
+        assertEquals(2, freeAfter.size());
+    }
+
+    @Test
+    void reserveCar_whenCarDoesNotExist_shouldReturnEmpty() {
+        when(carRepository.findByRegistrationNumber("NONEXISTENT")).thenReturn(Optional.empty());
+        
+        Optional<Reservation> reservation = carRentalService.reserveCar("NONEXISTENT",
+                Instant.parse("2025-06-01T10:00:00Z"), Instant.parse("2025-06-01T12:00:00Z"));
+        
+        assertFalse(reservation.isPresent());
     }
 }
@@ -8,6 +8,7 @@ import org.mockito.MockitoAnnotations;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -47,25 +48,25 @@ class CarRentalServiceTest {
     }
 
     @Test
-    void rentCar_whenCarIsAvailable_shouldReturnTrueAndUpdateCar() {
+    void rentCar_whenCarIsAvailable_shouldReturnTrueAndSwitchAvailability() {
         // Given
         String registrationNumber = "ABC123";
-        when(carRepository.findByRegistrationNumber(registrationNumber)).thenReturn(Optional.of(availableCar));
+        when(carRepository.compareAndSetAvailable(registrationNumber, true, false)).thenReturn(true);
         
         // When
         boolean result = carRentalService.rentCar(registrationNumber);
         
         // Then
         assertTrue(result);
-        assertFalse(availableCar.isAvailable());
-        verify(carRepository).findByRegistrationNumber(registrationNumber);
-        verify(carRepository).updateCar(availableCar);
+        verify(carRepository).compareAndSetAvailable(registrationNumber, true, false);
+        verify(carRepository, never()).updateCar(any(Car.class));
     }
 
     @Test
     void rentCar_whenCarIsNotAvailable_shouldReturnFalse() {
         // Given
         String registrationNumber = "XYZ789";
+        when(carRepository.compareAndSetAvailable(registrationNumber, true, false)).thenReturn(false);
         when(carRepository.findByRegistrationNumber(registrationNumber)).thenReturn(Optional.of(unavailableCar));
         
         // When
@@ -73,7 +74,7 @@ class CarRentalServiceTest {
         
         // Then
         assertFalse(result);
-        verify(carRepository).findByRegistrationNumber(registrationNumber);
+        verify(carRepository).compareAndSetAvailable(registrationNumber, true, false);
         verify(carRepository, never()).updateCar(any(Car.class));
     }
 
@@ -88,23 +89,22 @@ class CarRentalServiceTest {
         
         // Then
         assertFalse(result);
-        verify(carRepository).findByRegistrationNumber(registrationNumber);
+        verify(carRepository).compareAndSetAvailable(registrationNumber, true, false);
         verify(carRepository, never()).updateCar(any(Car.class));
     }
 
     @Test
-    void returnCar_whenCarExists_shouldMakeCarAvailableAndUpdate() {
+    void returnCar_whenCarExists_shouldSwitchAvailability() {
         // Given
         String registrationNumber = "XYZ789";
-        when(carRepository.findByRegistrationNumber(registrationNumber)).thenReturn(Optional.of(unavailableCar));
+        when(carRepository.compareAndSetAvailable(registrationNumber, false, true)).thenReturn(true);
         
         // When
         carRentalService.returnCar(registrationNumber);
         
         // Then
-        assertTrue(unavailableCar.isAvailable());
-        verify(carRepository).findByRegistrationNumber(registrationNumber);
-        verify(carRepository).updateCar(unavailableCar);
+        verify(carRepository).compareAndSetAvailable(registrationNumber, false, true);
+        verify(carRepository, never()).updateCar(any(Car.class));
     }
 
     @Test
@@ -117,7 +117,56 @@ class CarRentalServiceTest {
         carRentalService.returnCar(registrationNumber);
         
         // Then
-        verify(carRepository).findByRegistrationNumber(registrationNumber);
+        verify(carRepository).compareAndSetAvailable(registrationNumber, false, true);
         verify(carRepository, never()).updateCar(any(Car.class));
     }
+
+    @Test
+    void rentCars_shouldReturnOutcomeForEachCar() {
+        // Given
+        when(carRepository.compareAndSetAvailable("ABC123", true, false)).thenReturn(true, false);
+        when(carRepository.findByRegistrationNumber("XYZ789")).thenReturn(Optional.of(unavailableCar));
+        when(carRepository.findByRegistrationNumber("NONEXISTENT")).thenReturn(Optional.empty());
+        
+        // When
+        Map<String, RentalOutcome> result = carRentalService.rentCars(
+                Arrays.asList("ABC123", "XYZ789", "NONEXISTENT", "ABC123"), false);
+        
+        // Then
+        assertEquals(Arrays.asList("ABC123", "XYZ789", "NONEXISTENT"), List.copyOf(result.keySet()));
+        assertEquals(RentalOutcome.SUCCESS, result.get("ABC123"));
+        assertEquals(RentalOutcome.CONFLICT, result.get("XYZ789"));
+        assertEquals(RentalOutcome.NOT_FOUND, result.get("NONEXISTENT"));
+        verify(carRepository, times(1)).compareAndSetAvailable("ABC123", true, false);
+    }
+
+    @Test
+    void rentCars_whenAllOrNothingAndOneFails_shouldRollBackRentedCars() {
+        // Given
+        when(carRepository.compareAndSetAvailable("ABC123", true, false)).thenReturn(true);
+        when(carRepository.findByRegistrationNumber("XYZ789")).thenReturn(Optional.of(unavailableCar));
+        
+        // When
+        Map<String, RentalOutcome> result = carRentalService.rentCars(Arrays.asList("ABC123", "XYZ789"), true);
+        
+        // Then
+        assertEquals(RentalOutcome.ROLLED_BACK, result.get("ABC123"));
+        assertEquals(RentalOutcome.CONFLICT, result.get("XYZ789"));
+        verify(carRepository).compareAndSetAvailable("ABC123", false, true);
+        verify(carRepository, never()).compareAndSetAvailable("XYZ789", false, true);
+    }
+
+    @Test
+    void returnCars_shouldReturnOutcomeForEachCar() {
+        // Given
+        when(carRepository.compareAndSetAvailable("XYZ789", false, true)).thenReturn(true);
+        when(carRepository.findByRegistrationNumber("ABC123")).thenReturn(Optional.of(availableCar));
+        
+        // When
+        Map<String, RentalOutcome> result = carRentalService.returnCars(Arrays.asList("XYZ789", "ABC123"), false);
+        
+        // Then
+        assertEquals(RentalOutcome.SUCCESS, result.get("XYZ789"));
+        assertEquals(RentalOutcome.CONFLICT, result.get("ABC123"));
+    }
 }
@@ -0,0 +1,54 @@
+package com.example.rental;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Wall-clock test on up to a million cars, only run with mvn -Pperf test
+ */
+@Tag("perf")
+class CarRepositoryLatencyTest {
+
+    private static final int OPERATIONS = 200_000;
+
+    @Test
+    void findAndUpdate_latencyShouldNotGrowWithFleetSize() {
+        // When
+        double small = measureNanosPerOperation(1_000);
+        double medium = measureNanosPerOperation(100_000);
+        double large = measureNanosPerOperation(1_000_000);
+
+        // Then : a linear scan would be ~1000x slower at 1M than at 1k
+        assertTrue(large < small * 50, "1M fleet latency " + large + "ns vs 1k fleet " + small + "ns");
+        assertTrue(medium < small * 50, "100k fleet latency " + medium + "ns vs 1k fleet " + small + "ns");
+    }
+
+    private static double measureNanosPerOperation(int fleetSize) {
+        CarRepository carRepository = new CarRepository();
+        for (int i = 0; i < fleetSize; i++) {
+            carRepository.addCar(new Car(registration(i), "Model" + (i % 10), true));
+        }
+
+        // Warm up before measuring
+        runOperations(carRepository, fleetSize);
+
+        long start = System.nanoTime();
+        runOperations(carRepository, fleetSize);
+        return (double) (System.nanoTime() - start) / OPERATIONS;
+    }
+
+    private static void runOperations(CarRepository carRepository, int fleetSize) {
+        for (int i = 0; i < OPERATIONS; i++) {
+            Optional<Car> car = carRepository.findByRegistrationNumber(registration((int) ((i * 7919L) % fleetSize)));
+            assertTrue(car.isPresent());
+            carRepository.updateCar(car.get());
+        }
+    }
+
+    private static String registration(int i) {
+        return "REG-" + i;
+    }
+}
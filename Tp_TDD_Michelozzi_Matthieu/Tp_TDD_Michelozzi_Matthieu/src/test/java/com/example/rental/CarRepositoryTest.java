@@ -2,9 +2,18 @@ package com.example.rental;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -81,4 +90,281 @@ class CarRepositoryTest {
         assertTrue(foundCar.isPresent());
         assertFalse(foundCar.get().isAvailable());
     }
+
+    @Test
+    void getAllCars_shouldShareTheSameViewUntilTheNextWrite() {
+        // Given
+        List<Car> before = carRepository.getAllCars();
+
+        // When
+        List<Car> unchanged = carRepository.getAllCars();
+        carRepository.compareAndSetAvailable("ABC123", true, false);
+        List<Car> after = carRepository.getAllCars();
+
+        // Then
+        assertSame(before, unchanged);
+        assertNotSame(before, after);
+        assertTrue(before.get(0).isAvailable());
+        assertFalse(after.get(0).isAvailable());
+        assertThrows(UnsupportedOperationException.class, () -> after.add(car1));
+    }
+
+    @Test
+    void getAllCars_withConcurrentReadersAfterAWrite_shouldBuildTheViewOnce() throws Exception {
+        // Given
+        for (int i = 0; i < 20_000; i++) {
+            carRepository.addCar(new Car("REG-" + i, "Model" + (i % 10), true));
+        }
+        int readers = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(readers);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<List<Car>>> views = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < readers; i++) {
+            views.add(executor.submit(() -> {
+                go.await();
+                return carRepository.getAllCars();
+            }));
+        }
+        go.countDown();
+
+        // Then
+        List<Car> first = views.get(0).get(10, TimeUnit.SECONDS);
+        assertEquals(20_002, first.size());
+        for (Future<List<Car>> view : views) {
+            assertSame(first, view.get(10, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    void getAllCars_duringWrites_shouldListEveryCarOnceInOrder() throws Exception {
+        // Given
+        List<String> registrationNumbers = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            registrationNumbers.add(String.format("REG-%05d", i));
+            carRepository.addCar(new Car(registrationNumbers.get(i), "Model" + (i % 10), true));
+        }
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        // When : the cars are rented one after the other while the list is read
+        Future<?> renting = executor.submit(() -> {
+            for (String registrationNumber : registrationNumbers) {
+                carRepository.compareAndSetAvailable(registrationNumber, true, false);
+            }
+        });
+        List<List<Car>> views = new ArrayList<>();
+        while (!renting.isDone()) {
+            views.add(carRepository.getAllCars());
+        }
+        renting.get();
+        executor.shutdown();
+
+        // Then : every view lists each car once in order, and the list read afterwards has every write
+        for (List<Car> view : views) {
+            assertEquals(20_002, view.size());
+            for (int i = 1; i < view.size(); i++) {
+                assertTrue(view.get(i - 1).getRegistrationNumber().compareTo(view.get(i).getRegistrationNumber()) < 0);
+            }
+        }
+        assertTrue(carRepository.getAllCars().stream()
+                .filter(car -> car.getRegistrationNumber().startsWith("REG-"))
+                .noneMatch(Car::isAvailable));
+    }
+
+    @ParameterizedTest
+    @EnumSource(CarRepository.Storage.class)
+    void updateCar_withAnotherModel_shouldMoveTheCarBetweenSearches(CarRepository.Storage storage) {
+        // Given
+        CarRepository repository = new CarRepository(CarRepository.DEFAULT_SHARDS, storage);
+        repository.addCar(new Car("ABC123", "Toyota", true));
+        repository.addCar(new Car("DEF456", "Toyota", true));
+        long toyotaVersion = repository.getModelVersion("toyota", false);
+        long hondaVersion = repository.getModelVersion("honda", false);
+
+        // When
+        repository.updateCar(new Car("ABC123", "Honda", false));
+
+        // Then
+        assertEquals(List.of("DEF456"), repository.findByModel("Toyota").stream()
+                .map(Car::getRegistrationNumber).toList());
+        assertEquals(1, repository.findByModelPrefix("Toy").size());
+        List<Car> hondas = repository.findByModel("honda");
+        assertEquals(1, hondas.size());
+        assertEquals("Honda", hondas.get(0).getModel());
+        assertEquals(1, repository.findByModelPrefix("Hon").size());
+        assertTrue(repository.getModelVersion("toyota", false) > toyotaVersion);
+        assertTrue(repository.getModelVersion("honda", false) > hondaVersion);
+    }
+
+    @Test
+    void compareAndSetAvailable_whenValueDiffers_shouldFail() {
+        // When
+        boolean rented = carRepository.compareAndSetAvailable("XYZ789", true, false);
+        boolean missing = carRepository.compareAndSetAvailable("NONEXISTENT", true, false);
+
+        // Then
+        assertFalse(rented);
+        assertFalse(missing);
+        assertFalse(carRepository.findByRegistrationNumber("XYZ789").get().isAvailable());
+    }
+
+    @Test
+    void getModelVersion_shouldOnlyIncreaseWithChangesOfThatModel() {
+        // Given
+        long fleetVersion = carRepository.getVersion();
+        long toyotaVersion = carRepository.getModelVersion("toyota", false);
+        long hondaVersion = carRepository.getModelVersion("Honda", false);
+        long prefixVersion = carRepository.getModelVersion("TOY", true);
+
+        // When
+        carRepository.compareAndSetAvailable("ABC123", true, false);
+        carRepository.addCar(new Car("DEF456", "Toyota Yaris", true));
+
+        // Then
+        assertEquals(fleetVersion + 2, carRepository.getVersion());
+        assertEquals(toyotaVersion + 1, carRepository.getModelVersion("TOYOTA", false));
+        assertEquals(hondaVersion, carRepository.getModelVersion("honda", false));
+        assertEquals(prefixVersion + 2, carRepository.getModelVersion("toy", true));
+        assertEquals(0, carRepository.getModelVersion("BMW", false));
+    }
+
+    @Test
+    void findByModel_shouldIgnoreCase() {
+        // Given
+        carRepository.addCar(new Car("DEF456", "toyota", true));
+        
+        // When
+        List<Car> cars = carRepository.findByModel("TOYOTA");
+        
+        // Then
+        assertEquals(2, cars.size());
+    }
+
+    @Test
+    void findByModel_whenModelDoesNotExist_shouldReturnEmpty() {
+        // When
+        List<Car> cars = carRepository.findByModel("BMW");
+        
+        // Then
+        assertTrue(cars.isEmpty());
+    }
+
+    @Test
+    void findByModelPrefix_shouldReturnCarsWhoseModelStartsWithPrefix() {
+        // Given
+        Car modelS = new Car("TES001", "Tesla Model S", true);
+        Car model3 = new Car("TES002", "Tesla Model 3", false);
+        carRepository.addCar(modelS);
+        carRepository.addCar(model3);
+        
+        // When
+        List<Car> cars = carRepository.findByModelPrefix("tesla");
+        
+        // Then
+        assertEquals(2, cars.size());
+        assertTrue(cars.contains(modelS));
+        assertTrue(cars.contains(model3));
+        assertFalse(cars.contains(car1));
+    }
+
+    @Test
+    void findPage_shouldReturnCarsInRegistrationOrderAcrossPages() {
+        // Given
+        carRepository.addCar(new Car("DEF456", "Ford", true));
+        
+        // When
+        CarPage firstPage = carRepository.findPage(null, 2, null, false, null);
+        CarPage secondPage = carRepository.findPage(firstPage.getLastRegistrationNumber(), 2, null, false, null);
+        
+        // Then
+        assertEquals(2, firstPage.getCars().size());
+        assertEquals("ABC123", firstPage.getCars().get(0).getRegistrationNumber());
+        assertEquals("DEF456", firstPage.getCars().get(1).getRegistrationNumber());
+        assertTrue(firstPage.hasMore());
+        assertEquals(1, secondPage.getCars().size());
+        assertEquals("XYZ789", secondPage.getCars().get(0).getRegistrationNumber());
+        assertFalse(secondPage.hasMore());
+    }
+
+    @Test
+    void findPage_shouldApplyModelPrefixAndAvailabilityFilters() {
+        // Given
+        carRepository.addCar(new Car("TES002", "Tesla Model 3", true));
+        carRepository.addCar(new Car("TES001", "Tesla Model S", true));
+        carRepository.addCar(new Car("TES003", "Tesla Model S", false));
+        
+        // When
+        CarPage page = carRepository.findPage("TES001", 10, "tesla", true, true);
+        
+        // Then
+        assertEquals(1, page.getCars().size());
+        assertEquals("TES002", page.getCars().get(0).getRegistrationNumber());
+        assertFalse(page.hasMore());
+    }
+
+    @Test
+    void iterateCars_shouldVisitMatchingCarsInRegistrationOrder() {
+        // Given
+        carRepository.addCar(new Car("AAA111", "Honda", false));
+        
+        // When
+        Iterator<Car> cars = carRepository.iterateCars(null, "honda", false, false);
+        
+        // Then
+        assertEquals("AAA111", cars.next().getRegistrationNumber());
+        assertEquals("XYZ789", cars.next().getRegistrationNumber());
+        assertFalse(cars.hasNext());
+    }
+
+    @Test
+    void shardedScans_shouldMatchASingleShardInRegistrationOrder() {
+        // Given : enough cars for the shards to be scanned in parallel
+        CarRepository sharded = new CarRepository(8);
+        CarRepository single = new CarRepository(1);
+        List<Car> batch = new ArrayList<>();
+        for (int i = 0; i < CarRepository.PARALLEL_SCAN_THRESHOLD + 100; i++) {
+            batch.add(new Car("REG" + i, "Model" + (i % 7), i % 3 != 0));
+        }
+        sharded.addCars(batch);
+        single.addCars(batch);
+
+        // When
+        List<Car> all = sharded.getAllCars();
+
+        // Then
+        assertEquals(single.getAllCars(), all);
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue(all.get(i - 1).getRegistrationNumber().compareTo(all.get(i).getRegistrationNumber()) < 0);
+        }
+        assertEquals(single.findByModel("model3"), sharded.findByModel("model3"));
+        assertEquals(single.findByModelPrefix("MODEL"), sharded.findByModelPrefix("MODEL"));
+        assertEquals(single.countAvailable(), sharded.countAvailable());
+        assertEquals(single.findPage("REG5", 50, "model2", false, true).getCars(),
+                sharded.findPage("REG5", 50, "model2", false, true).getCars());
+    }
+
+    @Test
+    void shardedVersions_shouldGrowByOnePerWrite() {
+        // Given
+        CarRepository sharded = new CarRepository(4);
+        sharded.addCar(new Car("AAA111", "Ford", true));
+        long version = sharded.getVersion();
+        long modelVersion = sharded.getModelVersion("ford", false);
+
+        // When
+        sharded.addCar(new Car("BBB222", "Ford", true));
+        sharded.compareAndSetAvailable("AAA111", true, false);
+
+        // Then
+        assertEquals(version + 2, sharded.getVersion());
+        assertEquals(modelVersion + 2, sharded.getModelVersion("FORD", false));
+        assertEquals(modelVersion + 2, sharded.getModelVersion("fo", true));
+    }
+
+    @Test
+    void newRepository_withoutShards_shouldBeRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new CarRepository(0));
+    }
 }
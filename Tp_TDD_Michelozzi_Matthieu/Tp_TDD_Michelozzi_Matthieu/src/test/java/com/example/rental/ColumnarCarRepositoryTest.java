@@ -0,0 +1,250 @@
+package com.example.rental;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.example.rental.CarRepository.Storage;
+
+class ColumnarCarRepositoryTest {
+
+    private final CarRepository columnar = new CarRepository(4, Storage.COLUMNAR);
+    private final CarRepository objects = new CarRepository(4, Storage.OBJECTS);
+
+    @Test
+    void columnarStorage_shouldAnswerLikeTheObjectStorage() {
+        // Given : enough cars for the columns to grow and the scans to run in parallel
+        Random random = new Random(42);
+        List<Car> batch = new ArrayList<>();
+        for (int i = 0; i < CarRepository.PARALLEL_SCAN_THRESHOLD + 500; i++) {
+            batch.add(new Car("REG-" + random.nextInt(1_000_000), i % 11 == 0 ? null : "Model" + (i % 13),
+                    random.nextBoolean()));
+        }
+
+        // When
+        both(repository -> repository.addCars(batch));
+        for (int i = 0; i < 2000; i++) {
+            String registrationNumber = batch.get(random.nextInt(batch.size())).getRegistrationNumber();
+            boolean available = random.nextBoolean();
+            both(repository -> repository.compareAndSetAvailable(registrationNumber, !available, available));
+        }
+        both(repository -> repository.updateCar(new Car(batch.get(0).getRegistrationNumber(), "Other", false)));
+
+        // Then
+        assertEquals(objects.getAllCars().size(), columnar.getAllCars().size());
+        assertSameCars(objects.getAllCars(), columnar.getAllCars());
+        assertSameCars(objects.findByModel("MODEL7"), columnar.findByModel("MODEL7"));
+        assertSameCars(objects.findByModelPrefix("model1"), columnar.findByModelPrefix("model1"));
+        assertSameCars(objects.findPage("REG-5", 100, null, false, false).getCars(),
+                columnar.findPage("REG-5", 100, null, false, false).getCars());
+        assertEquals(objects.countAvailable(), columnar.countAvailable());
+        assertEquals(objects.getVersion(), columnar.getVersion());
+        assertEquals("Other", columnar.findByRegistrationNumber(batch.get(0).getRegistrationNumber())
+                .orElseThrow().getModel());
+    }
+
+    @Test
+    void columnarStorage_shouldOrderRegistrationNumbersLikeStrings() {
+        // Given : characters encoded on 1 to 4 bytes, including one outside the Basic Multilingual Plane
+        List<Car> batch = List.of(new Car("B", "X", true), new Car("a", "X", true), new Car("é1", "X", true),
+                new Car("ﬁ", "X", true), new Car("🚗", "X", true), new Car("A", "X", true),
+                new Car("é", "X", true));
+
+        // When
+        both(repository -> repository.addCars(batch));
+
+        // Then
+        assertSameCars(objects.getAllCars(), columnar.getAllCars());
+        assertSameCars(objects.findPage("a", 10, "x", false, null).getCars(),
+                columnar.findPage("a", 10, "x", false, null).getCars());
+        assertTrue(columnar.findByRegistrationNumber("🚗").isPresent());
+        assertFalse(columnar.findByRegistrationNumber("é2").isPresent());
+    }
+
+    @Test
+    void columnarStorage_withConcurrentRentals_shouldGrantEachCarOnce() throws Exception {
+        // Given
+        CarRepository repository = new CarRepository(2, Storage.COLUMNAR);
+        for (int i = 0; i < 100; i++) {
+            repository.addCar(new Car("CAR" + i, "Model", true));
+        }
+        AtomicInteger rented = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // When : every thread tries to rent every car, while others are added
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            int id = thread;
+            tasks.add(executor.submit(() -> {
+                for (int i = 0; i < 100; i++) {
+                    if (repository.compareAndSetAvailable("CAR" + i, true, false)) {
+                        rented.incrementAndGet();
+                    }
+                    repository.addCar(new Car("NEW" + id + "-" + i, "Model", true));
+                }
+            }));
+        }
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+        executor.shutdown();
+
+        // Then
+        assertEquals(100, rented.get());
+        assertEquals(900, repository.size());
+        assertEquals(800, repository.countAvailable());
+        assertEquals(900, repository.getAllCars().size());
+    }
+
+    @Test
+    void columnarStorage_withUnknownCar_shouldChangeNothing() {
+        // Given
+        columnar.addCar(new Car("ABC123", null, true));
+
+        // When
+        columnar.updateCar(new Car("UNKNOWN", "Toyota", false));
+
+        // Then
+        assertFalse(columnar.compareAndSetAvailable("UNKNOWN", true, false));
+        assertFalse(columnar.findByRegistrationNumber("UNKNOWN").isPresent());
+        assertNull(columnar.findByRegistrationNumber("ABC123").orElseThrow().getModel());
+        assertTrue(columnar.findByModel("toyota").isEmpty());
+    }
+
+    @Test
+    void statistics_withConcurrentWrites_shouldMatchARecount() throws Exception {
+        for (Storage storage : Storage.values()) {
+            // Given
+            CarRepository repository = new CarRepository(4, storage);
+            for (int i = 0; i < 200; i++) {
+                repository.addCar(new Car("CAR" + i, i % 7 == 0 ? null : "Model" + (i % 5), true));
+            }
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+
+            // When : rents, returns, updates and adds race, while the statistics are read
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                int id = thread;
+                tasks.add(executor.submit(() -> {
+                    Random random = new Random(id);
+                    for (int i = 0; i < 2000; i++) {
+                        String registrationNumber = "CAR" + random.nextInt(200);
+                        switch (random.nextInt(5)) {
+                        case 0, 1 -> repository.compareAndSetAvailable(registrationNumber, true, false);
+                        case 2 -> repository.compareAndSetAvailable(registrationNumber, false, true);
+                        case 3 -> repository.updateCar(new Car(registrationNumber,
+                                random.nextInt(4) == 0 ? null : (random.nextBoolean() ? "Model" : "MODEL")
+                                        + random.nextInt(5), random.nextBoolean()));
+                        default -> repository.addCar(new Car("NEW" + id + "-" + i, "Model" + (i % 5), false));
+                        }
+                        FleetStatistics statistics = repository.getStatistics();
+                        assertTrue(statistics.getAvailable() >= 0 && statistics.getRented() >= 0);
+                        assertTrue(statistics.getRentedByModel().values().stream().allMatch(count -> count > 0));
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+            executor.shutdown();
+
+            // Then
+            FleetStatistics statistics = repository.getStatistics();
+            List<Car> cars = repository.getAllCars();
+            Map<String, Long> rentedByModel = cars.stream()
+                    .filter(car -> !car.isAvailable() && car.getModel() != null)
+                    .collect(Collectors.groupingBy(car -> car.getModel().toLowerCase(Locale.ROOT),
+                            Collectors.counting()));
+            assertEquals(cars.size(), statistics.getSize(), storage.name());
+            assertEquals(repository.countAvailable(), statistics.getAvailable(), storage.name());
+            assertEquals(cars.stream().filter(car -> !car.isAvailable()).count(), statistics.getRented());
+            assertEquals(rentedByModel, statistics.getRentedByModel(), storage.name());
+            assertTrue(cars.stream().map(Car::getModel).anyMatch(Objects::isNull));
+        }
+    }
+
+    @Test
+    void statistics_withCarsReturnedWhileTheyAreAdded_shouldNeverGoNegative() throws Exception {
+        for (Storage storage : Storage.values()) {
+            // Given
+            CarRepository repository = new CarRepository(2, storage);
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            int cars = 20_000;
+
+            // When : rented cars are added while other threads return them as soon as they appear
+            List<Future<?>> tasks = new ArrayList<>();
+            tasks.add(executor.submit(() -> {
+                for (int i = 0; i < cars; i++) {
+                    repository.addCar(new Car("CAR" + i, "Model" + (i % 3), false));
+                }
+            }));
+            for (int thread = 0; thread < 3; thread++) {
+                tasks.add(executor.submit(() -> {
+                    for (int i = 0; i < cars; i++) {
+                        while (repository.findByRegistrationNumber("CAR" + i).isEmpty()) {
+                            Thread.onSpinWait();
+                        }
+                        repository.compareAndSetAvailable("CAR" + i, false, true);
+                        FleetStatistics statistics = repository.getStatistics();
+                        assertTrue(statistics.getAvailable() >= 0 && statistics.getRented() >= 0);
+                        assertTrue(statistics.getAvailable() <= statistics.getSize());
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+            executor.shutdown();
+
+            // Then
+            FleetStatistics statistics = repository.getStatistics();
+            assertEquals(cars, statistics.getSize(), storage.name());
+            assertEquals(cars, statistics.getAvailable(), storage.name());
+            assertTrue(statistics.getRentedByModel().isEmpty(), storage.name());
+        }
+    }
+
+    @Test
+    void statistics_shouldCountModelsIgnoringCase() {
+        // Given
+        columnar.addCar(new Car("AAA111", "Tesla", false));
+        columnar.addCar(new Car("BBB222", "tesla", false));
+        columnar.addCar(new Car("CCC333", "TESLA", true));
+
+        // When
+        FleetStatistics statistics = columnar.getStatistics();
+
+        // Then
+        assertEquals(Map.of("tesla", 2L), statistics.getRentedByModel());
+        assertEquals(2, statistics.getRented());
+    }
+
+    private void both(Consumer<CarRepository> action) {
+        action.accept(objects);
+        action.accept(columnar);
+    }
+
+    private static void assertSameCars(List<Car> expected, List<Car> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getRegistrationNumber(), actual.get(i).getRegistrationNumber());
+            assertEquals(expected.get(i).getModel(), actual.get(i).getModel());
+            assertEquals(expected.get(i).isAvailable(), actual.get(i).isAvailable());
+        }
+    }
+}
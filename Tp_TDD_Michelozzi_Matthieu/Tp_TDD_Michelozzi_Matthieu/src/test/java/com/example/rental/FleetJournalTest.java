@@ -0,0 +1,145 @@
+package com.example.rental;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import com.example.rental.FleetJournal.FsyncPolicy;
+
+class FleetJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @EnumSource(FsyncPolicy.class)
+    void restart_shouldRestoreAddedAndRentedCars(FsyncPolicy fsyncPolicy) throws IOException {
+        // Given
+        CarRepository carRepository = new CarRepository();
+        FleetJournal journal = start(carRepository, fsyncPolicy);
+        carRepository.addCar(new Car("ABC123", "Toyota", true));
+        carRepository.addCars(List.of(new Car("XYZ789", "Honda", true), new Car("DEF456", "Ford", false)));
+        rent(carRepository, "ABC123");
+        journal.close();
+
+        // When
+        CarRepository restored = new CarRepository();
+        start(restored, fsyncPolicy).close();
+
+        // Then
+        assertEquals(3, restored.size());
+        assertFalse(restored.findByRegistrationNumber("ABC123").get().isAvailable());
+        assertTrue(restored.findByRegistrationNumber("XYZ789").get().isAvailable());
+        assertEquals("Ford", restored.findByRegistrationNumber("DEF456").get().getModel());
+        assertEquals(1, restored.findByModel("honda").size());
+    }
+
+    @Test
+    void restart_shouldRestoreSnapshotPlusLogTail() throws IOException {
+        // Given
+        CarRepository carRepository = new CarRepository();
+        FleetJournal journal = start(carRepository, FsyncPolicy.BATCH);
+        carRepository.addCar(new Car("ABC123", "Toyota", true));
+        carRepository.addCar(new Car("XYZ789", "Honda", true));
+        journal.snapshot();
+        rent(carRepository, "XYZ789");
+        carRepository.addCar(new Car("DEF456", "Ford", true));
+        journal.close();
+
+        // When
+        CarRepository restored = new CarRepository();
+        start(restored, FsyncPolicy.BATCH).close();
+
+        // Then
+        assertEquals(3, restored.size());
+        assertFalse(restored.findByRegistrationNumber("XYZ789").get().isAvailable());
+        assertTrue(Files.exists(directory.resolve(FleetJournal.SNAPSHOT_FILE)));
+        assertEquals(2, logSegments().size(), "segments before the snapshot should be deleted");
+    }
+
+    @Test
+    void restart_withTornLastRecord_shouldKeepEverythingBeforeIt() throws IOException {
+        // Given
+        CarRepository carRepository = new CarRepository();
+        FleetJournal journal = start(carRepository, FsyncPolicy.EVERY_WRITE);
+        carRepository.addCar(new Car("ABC123", "Toyota", true));
+        journal.close();
+        Files.write(logSegments().get(0), new byte[] { 1, 0, 9, 'X' }, StandardOpenOption.APPEND);
+
+        // When
+        CarRepository restored = new CarRepository();
+        FleetJournal restarted = start(restored, FsyncPolicy.EVERY_WRITE);
+        restored.addCar(new Car("XYZ789", "Honda", true));
+        restarted.close();
+        CarRepository restoredAgain = new CarRepository();
+        start(restoredAgain, FsyncPolicy.EVERY_WRITE).close();
+
+        // Then
+        assertEquals(2, restoredAgain.size());
+    }
+
+    /**
+     * Wall-clock test, only run with mvn -Pperf test
+     */
+    @Test
+    @Tag("perf")
+    void restart_withOneMillionCars_shouldReplayInSeconds() throws IOException {
+        // Given
+        int fleetSize = 1_000_000;
+        CarRepository carRepository = new CarRepository();
+        FleetJournal journal = start(carRepository, FsyncPolicy.INTERVAL);
+        List<Car> batch = new ArrayList<>();
+        for (int i = 0; i < fleetSize; i++) {
+            batch.add(new Car("REG-" + i, "Model" + (i % 50), true));
+            if (batch.size() == CarImporter.BATCH_SIZE) {
+                carRepository.addCars(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        journal.snapshot();
+        for (int i = 0; i < 10_000; i++) {
+            rent(carRepository, "REG-" + i);
+        }
+        journal.close();
+
+        // When
+        CarRepository restored = new CarRepository();
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> start(restored, FsyncPolicy.INTERVAL).close());
+
+        // Then
+        assertEquals(fleetSize, restored.size());
+        assertFalse(restored.findByRegistrationNumber("REG-9999").get().isAvailable());
+        assertTrue(restored.findByRegistrationNumber("REG-10000").get().isAvailable());
+    }
+
+    private FleetJournal start(CarRepository carRepository, FsyncPolicy fsyncPolicy) throws IOException {
+        FleetJournal journal = new FleetJournal(carRepository, directory, fsyncPolicy, 10, 0);
+        journal.start();
+        return journal;
+    }
+
+    private static void rent(CarRepository carRepository, String registrationNumber) {
+        assertTrue(carRepository.compareAndSetAvailable(registrationNumber, true, false));
+    }
+
+    private List<Path> logSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+    }
+}
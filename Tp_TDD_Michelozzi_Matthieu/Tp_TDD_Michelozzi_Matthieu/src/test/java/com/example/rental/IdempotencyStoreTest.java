@@ -0,0 +1,121 @@
+package com.example.rental;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class IdempotencyStoreTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Test
+    void execute_withSameKey_shouldReplayTheFirstResult() {
+        // Given
+        IdempotencyStore store = new IdempotencyStore(60_000, 100);
+
+        // When
+        int first = store.execute("key-1", "rent ABC123", calls::incrementAndGet);
+        int retry = store.execute("key-1", "rent ABC123", calls::incrementAndGet);
+        int other = store.execute("key-2", "rent ABC123", calls::incrementAndGet);
+
+        // Then
+        assertEquals(1, first);
+        assertEquals(1, retry);
+        assertEquals(2, other);
+    }
+
+    @Test
+    void execute_withKeyOfAnotherRequest_shouldBeRefused() {
+        // Given
+        IdempotencyStore store = new IdempotencyStore(60_000, 100);
+        store.execute("key-1", "rent ABC123", calls::incrementAndGet);
+
+        // When / Then
+        assertThrows(IdempotencyStore.KeyReusedException.class,
+                () -> store.execute("key-1", "rent XYZ789", calls::incrementAndGet));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void execute_afterTheRetention_shouldRunAgainAndForgetOldKeys() throws Exception {
+        // Given
+        IdempotencyStore store = new IdempotencyStore(50, 100);
+        for (int i = 0; i < 10; i++) {
+            store.execute("key-" + i, "rent ABC123", calls::incrementAndGet);
+        }
+
+        // When
+        Thread.sleep(100);
+        int retry = store.execute("key-1", "rent ABC123", calls::incrementAndGet);
+
+        // Then
+        assertEquals(11, retry);
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void execute_beyondMaxEntries_shouldDropTheOldestKeys() {
+        // Given
+        IdempotencyStore store = new IdempotencyStore(60_000, 3);
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            store.execute("key-" + i, "rent ABC123", calls::incrementAndGet);
+        }
+
+        // Then
+        assertEquals(3, store.size());
+        assertEquals(5, (int) store.execute("key-4", "rent ABC123", calls::incrementAndGet));
+        assertEquals(6, (int) store.execute("key-0", "rent ABC123", calls::incrementAndGet));
+    }
+
+    @Test
+    void execute_whenTheFirstCallFails_shouldRunTheRetry() {
+        // Given
+        IdempotencyStore store = new IdempotencyStore(60_000, 100);
+        assertThrows(IllegalStateException.class, () -> store.execute("key-1", "add ABC123", () -> {
+            throw new IllegalStateException();
+        }));
+
+        // When
+        int retry = store.execute("key-1", "add ABC123", calls::incrementAndGet);
+
+        // Then
+        assertEquals(1, retry);
+    }
+
+    @Test
+    void execute_whileTheFirstCallRuns_shouldWaitForItsResult() throws Exception {
+        // Given
+        IdempotencyStore store = new IdempotencyStore(60_000, 100);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Integer> first = CompletableFuture.supplyAsync(() -> store.execute("key-1", "rent ABC123",
+                () -> {
+                    entered.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return calls.incrementAndGet();
+                }));
+        assertTrue(entered.await(10, TimeUnit.SECONDS));
+
+        // When
+        CompletableFuture<Integer> retry = CompletableFuture
+                .supplyAsync(() -> store.execute("key-1", "rent ABC123", calls::incrementAndGet));
+        release.countDown();
+
+        // Then
+        assertEquals(1, first.get(10, TimeUnit.SECONDS));
+        assertEquals(1, retry.get(10, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+    }
+}
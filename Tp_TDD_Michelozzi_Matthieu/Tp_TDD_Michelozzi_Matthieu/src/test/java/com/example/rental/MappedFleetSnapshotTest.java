@@ -0,0 +1,173 @@
+package com.example.rental;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+class MappedFleetSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void open_shouldDecodeCarsOnDemand() throws IOException {
+        // Given
+        Path file = directory.resolve("fleet.bin");
+        List<Car> cars = List.of(new Car("ABC123", "Toyota", true), new Car("DEF456", null, true),
+                new Car("XYZ789", "Honda", false));
+        MappedFleetSnapshot.write(file, 7, cars.iterator());
+
+        // When
+        MappedFleetSnapshot snapshot = MappedFleetSnapshot.open(file);
+
+        // Then
+        assertEquals(7, snapshot.getGeneration());
+        assertEquals(3, snapshot.size());
+        assertEquals("Honda", snapshot.find("XYZ789").getModel());
+        assertFalse(snapshot.find("XYZ789").isAvailable());
+        assertNull(snapshot.find("DEF456").getModel());
+        assertNull(snapshot.find("NONEXISTENT"));
+        Iterator<Car> iterator = snapshot.iterator();
+        assertEquals("ABC123", iterator.next().getRegistrationNumber());
+        assertEquals("DEF456", iterator.next().getRegistrationNumber());
+        assertEquals("XYZ789", iterator.next().getRegistrationNumber());
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    void open_withAStringLongerThanAShort_shouldDecodeItWhole() throws IOException {
+        // Given : a model of 80,000 UTF-8 bytes
+        Path file = directory.resolve("fleet.bin");
+        String model = "é".repeat(40_000);
+        MappedFleetSnapshot.write(file, 1, List.of(new Car("ABC123", model, true), new Car("XYZ789", "Honda", false))
+                .iterator());
+
+        // When
+        MappedFleetSnapshot snapshot = MappedFleetSnapshot.open(file);
+
+        // Then
+        assertEquals(model, snapshot.find("ABC123").getModel());
+        assertEquals("Honda", snapshot.find("XYZ789").getModel());
+    }
+
+    @Test
+    void open_withAVersionOneSnapshot_shouldDecodeItsShortLengths() throws IOException {
+        // Given : the layout of version 1, with lengths as shorts
+        Path file = directory.resolve("fleet.bin");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(0x464c5432);
+            out.writeInt(1);
+            out.writeLong(3);
+            out.writeInt(1);
+            out.writeInt(24 + 2 + 6 + 2 + 1);
+            out.writeShort(6);
+            out.writeBytes("ABC123");
+            out.writeShort(-1);
+            out.writeByte(1);
+            out.writeInt(24);
+        }
+
+        // When
+        MappedFleetSnapshot snapshot = MappedFleetSnapshot.open(file);
+
+        // Then
+        assertEquals(3, snapshot.getGeneration());
+        Car car = snapshot.find("ABC123");
+        assertNull(car.getModel());
+        assertTrue(car.isAvailable());
+    }
+
+    @Test
+    void attachSnapshot_shouldServeLookupsBeforeMaterializingTheFleet() throws IOException {
+        // Given
+        Path file = directory.resolve("fleet.bin");
+        MappedFleetSnapshot.write(file, 1,
+                List.of(new Car("ABC123", "Toyota", true), new Car("XYZ789", "Honda", true)).iterator());
+        CarRepository carRepository = new CarRepository();
+        carRepository.attachSnapshot(MappedFleetSnapshot.open(file));
+
+        // When
+        carRepository.compareAndSetAvailable("ABC123", true, false);
+        carRepository.addCar(new Car("XYZ789", "Duplicate", true));
+        carRepository.addCar(new Car("DEF456", "Ford", true));
+
+        // Then
+        assertFalse(carRepository.findByRegistrationNumber("ABC123").get().isAvailable());
+        assertEquals("Honda", carRepository.findByRegistrationNumber("XYZ789").get().getModel());
+        assertEquals(3, carRepository.size());
+        assertEquals(1, carRepository.findByModel("toyota").size());
+        assertFalse(carRepository.findByModel("toyota").get(0).isAvailable());
+    }
+
+    /**
+     * Wall-clock test, only run with mvn -Pperf test
+     */
+    @Test
+    @Tag("perf")
+    void startup_mappedSnapshotShouldBeFasterThanReimport() throws Exception {
+        // Given
+        int fleetSize = 1_000_000;
+        Path file = directory.resolve("fleet.bin");
+        StringBuilder csv = new StringBuilder();
+        CarRepository source = new CarRepository();
+        for (int i = 0; i < fleetSize; i++) {
+            source.addCar(new Car("REG-" + i, "Model" + (i % 50), i % 3 != 0));
+            csv.append("REG-").append(i).append(",Model").append(i % 50).append(',').append(i % 3 != 0).append('\n');
+        }
+        MappedFleetSnapshot.write(file, 1, source.iterateCars(null, null, false, null));
+        source = null;
+
+        // When
+        CarRepository empty = new CarRepository();
+
+        long mappedStart = System.nanoTime();
+        CarRepository mapped = new CarRepository();
+        mapped.attachSnapshot(MappedFleetSnapshot.open(file));
+        boolean firstLookup = mapped.findByRegistrationNumber("REG-424242").isPresent();
+        long mappedNanos = System.nanoTime() - mappedStart;
+
+        mapped.materialize();
+
+        long importStart = System.nanoTime();
+        CarRepository reimported = new CarRepository();
+        importInto(reimported, csv.toString());
+        long importNanos = System.nanoTime() - importStart;
+
+        // Then
+        assertTrue(firstLookup);
+        assertEquals(0, empty.size());
+        assertEquals(fleetSize, mapped.size());
+        assertEquals(fleetSize, reimported.size());
+        assertTrue(mappedNanos * 10 < importNanos, () -> String.format(
+                "mapped start took %.2f ms, re-import %.0f ms", mappedNanos / 1e6, importNanos / 1e6));
+    }
+
+    private static void importInto(CarRepository carRepository, String csv) throws Exception {
+        CarRentalService carRentalService = new CarRentalService();
+        CarImporter carImporter = new CarImporter();
+        inject(CarRentalService.class, carRentalService, "carRepository", carRepository);
+        inject(CarImporter.class, carImporter, "carRentalService", carRentalService);
+        inject(CarImporter.class, carImporter, "objectMapper", Jackson2ObjectMapperBuilder.json().build());
+        carImporter.importCsv(new StringReader(csv));
+    }
+
+    private static <T> void inject(Class<T> type, T target, String fieldName, Object value) throws Exception {
+        Field field = type.getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.rental;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ModelSearchCacheTest {
+
+    private CarRepository carRepository;
+    private ModelSearchCache modelSearchCache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        carRepository = new CarRepository();
+        carRepository.addCar(new Car("ABC123", "Toyota", true));
+        carRepository.addCar(new Car("XYZ789", "Honda", true));
+        carRepository.addCar(new Car("TES001", "Tesla", true));
+        modelSearchCache = new ModelSearchCache(carRepository, 3);
+        modelSearchCache.start();
+        loads = new AtomicInteger();
+    }
+
+    @AfterEach
+    void tearDown() {
+        modelSearchCache.close();
+    }
+
+    @Test
+    void get_whenSearchedAgain_shouldServeTheCachedResult() {
+        // When
+        List<Car> first = search("Toyota");
+        List<Car> second = search("toyota");
+
+        // Then
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertEquals(1, modelSearchCache.getHits());
+        assertEquals(1, modelSearchCache.getMisses());
+    }
+
+    @Test
+    void rentCar_shouldOnlyInvalidateSearchesMatchingItsModel() {
+        // Given
+        search("Toyota");
+        searchPrefix("Toy");
+        searchPrefix("Te");
+        loads.set(0);
+
+        // When
+        carRepository.compareAndSetAvailable("ABC123", true, false);
+
+        // Then
+        assertFalse(search("Toyota").get(0).isAvailable());
+        assertFalse(searchPrefix("Toy").get(0).isAvailable());
+        searchPrefix("Te");
+        assertEquals(2, loads.get());
+        assertEquals(2, modelSearchCache.getInvalidations());
+    }
+
+    @Test
+    void addCar_shouldInvalidateSearchesMatchingItsModel() {
+        // Given
+        search("Honda");
+        search("Toyota");
+
+        // When
+        carRepository.addCar(new Car("HON002", "honda", true));
+
+        // Then
+        assertEquals(2, search("Honda").size());
+        assertEquals(1, search("Toyota").size());
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void updateCar_withAnotherModel_shouldInvalidateSearchesOfBothModels() {
+        // Given
+        search("Toyota");
+        search("Honda");
+        loads.set(0);
+
+        // When
+        carRepository.updateCar(new Car("ABC123", "Honda", true));
+
+        // Then
+        assertEquals(0, search("Toyota").size());
+        assertEquals(2, search("Honda").size());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void get_whenFull_shouldEvictTheLeastRecentlyUsedSearch() {
+        // Given
+        search("Toyota");
+        search("Honda");
+        search("Tesla");
+        search("Toyota");
+
+        // When
+        searchPrefix("T");
+
+        // Then
+        assertEquals(3, modelSearchCache.size());
+        assertEquals(1, modelSearchCache.getEvictions());
+        search("Toyota");
+        assertEquals(4, loads.get(), "Toyota was used last, so Honda is the one evicted");
+    }
+
+    @Test
+    void get_whenCarChangesDuringTheLoad_shouldNotCacheTheStaleResult() {
+        // Given
+        Supplier<List<Car>> racingLoader = () -> {
+            List<Car> result = carRepository.findByModel("Toyota");
+            carRepository.compareAndSetAvailable("ABC123", true, false);
+            return result;
+        };
+
+        // When
+        modelSearchCache.get("Toyota", false, racingLoader);
+
+        // Then
+        assertFalse(search("Toyota").get(0).isAvailable());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void get_withConcurrentRentals_shouldEndWithTheCurrentResults() throws Exception {
+        // Given
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // When : searches race with rentals and returns of the cars they return
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            int id = thread;
+            tasks.add(executor.submit(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    String registrationNumber = i % 2 == 0 ? "ABC123" : "TES001";
+                    if (id % 2 == 0) {
+                        carRepository.compareAndSetAvailable(registrationNumber, i % 4 < 2, i % 4 >= 2);
+                    } else {
+                        searchPrefix("T");
+                        search("Tesla");
+                    }
+                }
+            }));
+        }
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+        executor.shutdown();
+
+        // Then
+        assertEquals(carRepository.findByModelPrefix("T"), searchPrefix("t"));
+        assertEquals(carRepository.findByModel("Tesla"), search("TESLA"));
+    }
+
+    private List<Car> search(String model) {
+        return modelSearchCache.get(model, false, () -> {
+            loads.incrementAndGet();
+            return carRepository.findByModel(model);
+        });
+    }
+
+    private List<Car> searchPrefix(String prefix) {
+        return modelSearchCache.get(prefix, true, () -> {
+            loads.incrementAndGet();
+            return carRepository.findByModelPrefix(prefix);
+        });
+    }
+}
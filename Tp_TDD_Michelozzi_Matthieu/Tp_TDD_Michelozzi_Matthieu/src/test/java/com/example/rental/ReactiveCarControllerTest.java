@@ -0,0 +1,127 @@
+package com.example.rental;
+
+import java.util.Arrays;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class ReactiveCarControllerTest {
+
+    private WebTestClient webTestClient;
+    private ReactiveCarRentalService reactiveCarRentalService;
+
+    private Car availableCar;
+    private Car unavailableCar;
+
+    @BeforeEach
+    void setUp() {
+        reactiveCarRentalService = mock(ReactiveCarRentalService.class);
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        ReactiveCarController reactiveCarController = new ReactiveCarController(reactiveCarRentalService, objectMapper);
+        webTestClient = WebTestClient.bindToRouterFunction(reactiveCarController.routes())
+                .handlerStrategies(ReactiveRentalServer.handlerStrategies(objectMapper))
+                .build();
+
+        availableCar = new Car("ABC123", "Toyota", true);
+        unavailableCar = new Car("XYZ789", "Honda", false);
+    }
+
+    @Test
+    void getAllCars_shouldStreamOneCarPerLine() {
+        when(reactiveCarRentalService.streamCars(null, null))
+                .thenReturn(Flux.fromIterable(Arrays.asList(availableCar, unavailableCar)));
+
+        webTestClient.get().uri("/reactive/cars")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBody(String.class).isEqualTo(
+                        "{\"registrationNumber\":\"ABC123\",\"model\":\"Toyota\",\"available\":true}\n"
+                        + "{\"registrationNumber\":\"XYZ789\",\"model\":\"Honda\",\"available\":false}\n");
+    }
+
+    @Test
+    void searchCarsByModel_shouldStreamMatchingCars() {
+        when(reactiveCarRentalService.streamCars("Toy*", true)).thenReturn(Flux.just(availableCar));
+
+        webTestClient.get().uri("/reactive/cars/search?model=Toy*&available=true")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .isEqualTo("{\"registrationNumber\":\"ABC123\",\"model\":\"Toyota\",\"available\":true}\n");
+    }
+
+    @Test
+    void searchCarsByModel_withoutModel_shouldBeRejected() {
+        webTestClient.get().uri("/reactive/cars/search")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void rentCar_shouldReturnOutcome() {
+        when(reactiveCarRentalService.rentCar("ABC123")).thenReturn(Mono.just(true));
+
+        webTestClient.post().uri("/reactive/cars/rent/ABC123")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("true");
+    }
+
+    @Test
+    void rentCar_whenWritesAreSaturated_shouldReturnServiceUnavailable() {
+        when(reactiveCarRentalService.rentCar("ABC123"))
+                .thenReturn(Mono.error(new RejectedExecutionException("queue full")));
+
+        webTestClient.post().uri("/reactive/cars/rent/ABC123")
+                .exchange()
+                .expectStatus().isEqualTo(503);
+    }
+
+    @Test
+    void returnCar_shouldCallService() {
+        when(reactiveCarRentalService.returnCar("XYZ789")).thenReturn(Mono.empty());
+
+        webTestClient.post().uri("/reactive/cars/return/XYZ789")
+                .exchange()
+                .expectStatus().isOk();
+        verify(reactiveCarRentalService).returnCar("XYZ789");
+    }
+
+    @Test
+    void addCar_whenNew_shouldReturnCreated() {
+        when(reactiveCarRentalService.addCar(any(Car.class))).thenReturn(Mono.just(true));
+
+        webTestClient.post().uri("/reactive/cars/add")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"registrationNumber\":\"DEF456\",\"model\":\"Ford\",\"available\":true}")
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(String.class).isEqualTo("true");
+    }
+
+    @Test
+    void addCar_whenDuplicateRegistrationNumber_shouldReturnConflict() {
+        when(reactiveCarRentalService.addCar(any(Car.class))).thenReturn(Mono.just(false));
+
+        webTestClient.post().uri("/reactive/cars/add")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"registrationNumber\":\"ABC123\",\"model\":\"Toyota\",\"available\":true}")
+                .exchange()
+                .expectStatus().isEqualTo(409)
+                .expectBody(String.class).isEqualTo("false");
+    }
+}
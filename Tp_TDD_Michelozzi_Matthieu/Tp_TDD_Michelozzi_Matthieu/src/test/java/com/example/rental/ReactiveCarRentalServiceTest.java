@@ -0,0 +1,100 @@
+package com.example.rental;
+
+import java.lang.reflect.Field;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Mono;
+
+class ReactiveCarRentalServiceTest {
+
+    private CarRepository carRepository;
+    private ReactiveCarRentalService reactiveCarRentalService;
+
+    @BeforeEach
+    void setUp() {
+        carRepository = new CarRepository();
+        CarRentalService carRentalService = new CarRentalService();
+        try {
+            Field repositoryField = CarRentalService.class.getDeclaredField("carRepository");
+            repositoryField.setAccessible(true);
+            repositoryField.set(carRentalService, carRepository);
+        } catch (Exception e) {
+            fail("Failed to set up test: " + e.getMessage());
+        }
+        reactiveCarRentalService = new ReactiveCarRentalService(carRentalService, 2, 10);
+        for (int i = 0; i < 100; i++) {
+            carRepository.addCar(new Car(String.format("REG-%03d", i), "Toyota", true));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        reactiveCarRentalService.close();
+    }
+
+    @Test
+    void streamCars_shouldOnlyReadTheCarsRequested() {
+        // Given
+        AtomicInteger emitted = new AtomicInteger();
+        BaseSubscriber<Car> slowSubscriber = new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(2);
+            }
+
+            @Override
+            protected void hookOnNext(Car car) {
+                emitted.incrementAndGet();
+            }
+        };
+
+        // When
+        reactiveCarRentalService.streamCars(null, null).subscribe(slowSubscriber);
+
+        // Then
+        assertEquals(2, emitted.get());
+        slowSubscriber.request(3);
+        assertEquals(5, emitted.get());
+        slowSubscriber.dispose();
+    }
+
+    @Test
+    void streamCars_shouldFollowRegistrationOrderAndFilters() {
+        // Given
+        carRepository.compareAndSetAvailable("REG-001", true, false);
+
+        // When
+        List<Car> cars = reactiveCarRentalService.streamCars("toy*", false).collectList().block();
+
+        // Then
+        assertEquals(1, cars.size());
+        assertEquals("REG-001", cars.get(0).getRegistrationNumber());
+    }
+
+    @Test
+    void rentCar_shouldBeLazyAndRentOnce() {
+        // Given
+        Mono<Boolean> rent = reactiveCarRentalService.rentCar("REG-000");
+
+        // When : nothing happens before subscription
+        Iterator<Car> before = carRepository.iterateCars(null, null, false, false);
+
+        // Then
+        assertFalse(before.hasNext());
+        assertTrue(rent.block());
+        assertFalse(rent.block());
+        assertFalse(carRepository.findByRegistrationNumber("REG-000").get().isAvailable());
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.rental;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+
+import com.example.Tp_TDD_Michelozzi_Matthieu.TpTddMichelozziMatthieuApplication;
+
+@SpringBootTest(classes = TpTddMichelozziMatthieuApplication.class, webEnvironment = WebEnvironment.NONE,
+        properties = { "rental.reactive.enabled=true", "rental.reactive.port=0",
+                "rental.reactive.event-loop-threads=1" })
+class ReactiveRentalServerTest {
+
+    @Autowired
+    private ReactiveRentalServer reactiveRentalServer;
+
+    @Autowired
+    private CarRepository carRepository;
+
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+    @Test
+    void rentCar_whileAnotherClientStopsReadingItsStream_shouldBeServedByTheSameEventLoop() throws Exception {
+        // Given : a listing far larger than the socket buffers, requested by a client that never reads it
+        List<Car> cars = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            cars.add(new Car(String.format("STREAM-%06d", i), "Model" + (i % 10), true));
+        }
+        carRepository.addCars(cars);
+        try (Socket stalled = new Socket()) {
+            stalled.setReceiveBufferSize(4096);
+            stalled.connect(new InetSocketAddress("localhost", reactiveRentalServer.getPort()));
+            OutputStream request = stalled.getOutputStream();
+            request.write("GET /reactive/cars HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            request.flush();
+            Thread.sleep(500);
+
+            // When
+            HttpResponse<String> rent = httpClient.send(HttpRequest.newBuilder(uri("/reactive/cars/rent/STREAM-000042"))
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .timeout(Duration.ofSeconds(10))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+
+            // Then
+            assertEquals(200, rent.statusCode());
+            assertEquals("true", rent.body());
+        }
+    }
+
+    @Test
+    void searchCarsByModel_shouldStreamTheMatchingCars() throws Exception {
+        // Given
+        carRepository.addCar(new Car("SEARCH-1", "Roadster", true));
+        carRepository.addCar(new Car("SEARCH-2", "Roadster", false));
+
+        // When
+        HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(
+                uri("/reactive/cars/search?model=roadster&available=true")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        // Then
+        assertEquals(200, response.statusCode());
+        assertEquals("{\"registrationNumber\":\"SEARCH-1\",\"model\":\"Roadster\",\"available\":true}\n",
+                response.body());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + reactiveRentalServer.getPort() + path);
+    }
+}
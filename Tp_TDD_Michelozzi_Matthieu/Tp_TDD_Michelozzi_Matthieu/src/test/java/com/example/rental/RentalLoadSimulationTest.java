@@ -0,0 +1,255 @@
+package com.example.rental;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.example.Tp_TDD_Michelozzi_Matthieu.TpTddMichelozziMatthieuApplication;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Drives the HTTP endpoints with concurrent clients, each running a random mix of rent, return, search and add calls,
+ * then logs the throughput and latency percentiles and checks that the fleet is consistent: no car was held by two
+ * clients at once, and the cars rented minus the cars returned are the cars no longer available.
+ * <p>
+ * A client only returns cars it rented, so every return succeeds and the holder of each car is known.
+ * Settings: {@code -Dload.clients} (16), {@code -Dload.operations} per client (250), {@code -Dload.fleet} (200 cars,
+ * few enough for the clients to contend), {@code -Dload.mix} (rent=40,return=30,search=20,add=10), and
+ * {@code -Dload.url} to load a running server instead of the one started for the test; the checks then assume
+ * nothing else rents or returns the simulated cars meanwhile. Load test, only run with mvn -Pperf test
+ */
+@Tag("perf")
+@SpringBootTest(classes = TpTddMichelozziMatthieuApplication.class, webEnvironment = WebEnvironment.RANDOM_PORT)
+class RentalLoadSimulationTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RentalLoadSimulationTest.class);
+    private static final int CLIENTS = Integer.getInteger("load.clients", 16);
+    private static final int OPERATIONS = Integer.getInteger("load.operations", 250);
+    private static final int FLEET = Integer.getInteger("load.fleet", 200);
+    private static final String MIX = System.getProperty("load.mix", "rent=40,return=30,search=20,add=10");
+    private static final String URL = System.getProperty("load.url");
+    private static final int MODELS = 10;
+
+    /** Keeps the cars of this run apart from those of a previous run against the same server */
+    private final String prefix = "SIM-" + Long.toString(System.currentTimeMillis(), Character.MAX_RADIX) + "-";
+
+    /** Built like the server's, which reads the immutable Car through its constructor parameter names */
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    @LocalServerPort
+    private int port;
+    private String baseUrl;
+
+    /** Client holding each rented car, set once the rent is confirmed and cleared before the return is sent */
+    private final Map<String, Integer> holders = new ConcurrentHashMap<>();
+    private final AtomicInteger doubleRentals = new AtomicInteger();
+    private final AtomicInteger errors = new AtomicInteger();
+    private final AtomicLong rents = new AtomicLong();
+    private final AtomicLong returns = new AtomicLong();
+    private final AtomicLong adds = new AtomicLong();
+    private final Map<Operation, ConcurrentLinkedQueue<Long>> latencies = new EnumMap<>(Operation.class);
+
+    private enum Operation {
+        RENT, RETURN, SEARCH, ADD
+    }
+
+    @Test
+    void mixedLoad_shouldKeepTheFleetConsistent() throws Exception {
+        int[] weights = parseMix(MIX);
+        baseUrl = URL == null ? "http://localhost:" + port : URL;
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new ConcurrentLinkedQueue<>());
+        }
+
+        // Given
+        for (int i = 0; i < FLEET; i++) {
+            send(Operation.ADD, post("/cars/add", new Car(prefix + i, "SimModel" + (i % MODELS), true)));
+        }
+        latencies.get(Operation.ADD).clear();
+        List<Car> before = simulatedCars();
+
+        // When
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<?>> clients = new ArrayList<>();
+        for (int client = 0; client < CLIENTS; client++) {
+            int id = client;
+            clients.add(executor.submit(() -> {
+                go.await();
+                runClient(id, weights);
+                return null;
+            }));
+        }
+        long start = System.nanoTime();
+        go.countDown();
+        for (Future<?> client : clients) {
+            client.get(10, TimeUnit.MINUTES);
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        executor.shutdown();
+        report(elapsedNanos);
+
+        // Then
+        List<Car> after = simulatedCars();
+        assertEquals(0, doubleRentals.get(), "a car was rented by two clients at once");
+        assertEquals(0, errors.get(), "unexpected responses");
+        assertEquals(unavailable(before) + rents.get() - returns.get(), unavailable(after),
+                "rents minus returns do not match the cars no longer available");
+        assertEquals(rents.get() - returns.get(), holders.size());
+        assertEquals(before.size() + adds.get(), after.size());
+    }
+
+    private void runClient(int id, int[] weights) throws Exception {
+        Random random = new Random(id);
+        List<String> held = new ArrayList<>();
+        for (int n = 0; n < OPERATIONS; n++) {
+            Operation operation = pick(weights, random.nextInt(weights[weights.length - 1]));
+            if (operation == Operation.RETURN && held.isEmpty()) {
+                operation = Operation.RENT;
+            }
+            switch (operation) {
+            case RENT -> {
+                String registrationNumber = prefix + random.nextInt(FLEET);
+                HttpResponse<String> response = send(operation,
+                        post("/cars/rent/" + registrationNumber, null));
+                if ("true".equals(response.body())) {
+                    rents.incrementAndGet();
+                    held.add(registrationNumber);
+                    if (holders.putIfAbsent(registrationNumber, id) != null) {
+                        doubleRentals.incrementAndGet();
+                    }
+                }
+            }
+            case RETURN -> {
+                String registrationNumber = held.remove(random.nextInt(held.size()));
+                holders.remove(registrationNumber);
+                if (send(operation, post("/cars/return/" + registrationNumber, null)).statusCode() == 200) {
+                    returns.incrementAndGet();
+                }
+            }
+            case SEARCH -> send(operation, HttpRequest.newBuilder(uri("/cars/search?model=SimModel"
+                    + random.nextInt(MODELS))).GET().build());
+            case ADD -> {
+                Car car = new Car(prefix + "ADD-" + id + "-" + n, "SimModel" + random.nextInt(MODELS), true);
+                if (send(operation, post("/cars/add", car)).statusCode() == 201) {
+                    adds.incrementAndGet();
+                }
+            }
+            }
+        }
+    }
+
+    private HttpResponse<String> send(Operation operation, HttpRequest request) throws Exception {
+        long start = System.nanoTime();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        latencies.get(operation).add(System.nanoTime() - start);
+        int status = response.statusCode();
+        if (status != 200 && status != 201 && !(operation == Operation.ADD && status == 409)) {
+            errors.incrementAndGet();
+        }
+        return response;
+    }
+
+    private HttpRequest post(String path, Car car) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri(path)).timeout(Duration.ofSeconds(30));
+        if (car == null) {
+            return request.POST(HttpRequest.BodyPublishers.noBody()).build();
+        }
+        return request.header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(car)))
+                .build();
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    private List<Car> simulatedCars() throws Exception {
+        HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(uri("/cars")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        List<Car> cars = objectMapper.readValue(response.body(), new TypeReference<List<Car>>() {
+        });
+        return cars.stream().filter(car -> car.getRegistrationNumber().startsWith(prefix)).toList();
+    }
+
+    private static long unavailable(List<Car> cars) {
+        return cars.stream().filter(car -> !car.isAvailable()).count();
+    }
+
+    private void report(long elapsedNanos) {
+        long total = latencies.values().stream().mapToLong(ConcurrentLinkedQueue::size).sum();
+        LOGGER.info(String.format(Locale.ROOT, "%d clients, %d operations in %d ms: %.0f req/s", CLIENTS, total,
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), total * 1e9 / elapsedNanos));
+        for (Map.Entry<Operation, ConcurrentLinkedQueue<Long>> entry : latencies.entrySet()) {
+            long[] sorted = entry.getValue().stream().mapToLong(Long::longValue).sorted().toArray();
+            if (sorted.length > 0) {
+                LOGGER.info(String.format(Locale.ROOT, "%-6s %6d calls  p50 %6.2f ms  p95 %6.2f ms  p99 %6.2f ms"
+                        + "  max %6.2f ms", entry.getKey().name().toLowerCase(Locale.ROOT), sorted.length,
+                        percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99),
+                        sorted[sorted.length - 1] / 1e6));
+            }
+        }
+    }
+
+    private static double percentile(long[] sorted, int percentile) {
+        return sorted[Math.min(sorted.length - 1, sorted.length * percentile / 100)] / 1e6;
+    }
+
+    /**
+     * @return the cumulative weight of each operation, in declaration order
+     */
+    private static int[] parseMix(String mix) {
+        int[] weights = new int[Operation.values().length];
+        for (String part : mix.split(",")) {
+            String[] entry = part.trim().split("=");
+            weights[Operation.valueOf(entry[0].trim().toUpperCase(Locale.ROOT)).ordinal()] = Integer
+                    .parseInt(entry[1].trim());
+        }
+        for (int i = 1; i < weights.length; i++) {
+            weights[i] += weights[i - 1];
+        }
+        if (weights[weights.length - 1] <= 0) {
+            throw new IllegalArgumentException("No operation in load.mix " + mix);
+        }
+        return weights;
+    }
+
+    private static Operation pick(int[] weights, int draw) {
+        int i = 0;
+        while (draw >= weights[i]) {
+            i++;
+        }
+        return Operation.values()[i];
+    }
+}
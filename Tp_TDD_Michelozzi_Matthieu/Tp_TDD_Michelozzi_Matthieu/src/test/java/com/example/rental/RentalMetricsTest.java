@@ -0,0 +1,169 @@
+package com.example.rental;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class RentalMetricsTest {
+
+    private MeterRegistry registry;
+    private CarRepository carRepository;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        carRepository = new CarRepository();
+        carRepository.addCar(new Car("ABC123", "Toyota", true));
+        carRepository.addCar(new Car("XYZ789", "Honda", false));
+    }
+
+    @Test
+    void rentCar_shouldCountEachOutcomeAndTimeTheRental() {
+        // Given
+        CarRentalService carRentalService = service(Set.of(RentalMetrics.LATENCY, RentalMetrics.RENT_OUTCOMES));
+
+        // When
+        carRentalService.rentCar("ABC123");
+        carRentalService.rentCar("XYZ789");
+        carRentalService.rentCar("UNKNOWN");
+        carRentalService.rentCars(List.of("UNKNOWN", "XYZ789"), false);
+
+        // Then
+        assertEquals(1, outcome("success"));
+        assertEquals(2, outcome("already_rented"));
+        assertEquals(2, outcome("unknown_registration"));
+        assertEquals(3, registry.get(RentalMetrics.LATENCY).tag("operation", "rent").timer().count());
+    }
+
+    @Test
+    void returnCar_shouldCountEachOutcomeAndTimeTheReturn() {
+        // Given
+        CarRentalService carRentalService = service(Set.of(RentalMetrics.LATENCY, RentalMetrics.RETURN_OUTCOMES));
+
+        // When
+        carRentalService.returnCar("XYZ789");
+        carRentalService.returnCar("ABC123");
+        carRentalService.rentCar("ABC123");
+        carRentalService.returnCars(List.of("ABC123", "UNKNOWN"), true);
+
+        // Then
+        assertEquals(1, returnOutcome("success"));
+        assertEquals(1, returnOutcome("already_available"));
+        assertEquals(1, returnOutcome("unknown_registration"));
+        assertNull(registry.find(RentalMetrics.RETURN_OUTCOMES).tag("outcome", "rolled_back").meter());
+        assertEquals(2, registry.get(RentalMetrics.LATENCY).tag("operation", "return").timer().count());
+        assertNull(registry.find(RentalMetrics.RENT_OUTCOMES).meter());
+    }
+
+    @Test
+    void addCar_shouldCountDuplicates() {
+        // Given
+        CarRentalService carRentalService = service(Set.of(RentalMetrics.LATENCY, RentalMetrics.ADD_CONFLICTS));
+
+        // When
+        carRentalService.addCar(new Car("DEF456", "Ford", true));
+        carRentalService.addCar(new Car("ABC123", "Toyota", true));
+        carRentalService.getCarsByModel("Ford");
+
+        // Then
+        assertEquals(1, registry.get(RentalMetrics.ADD_CONFLICTS).counter().count());
+        assertEquals(2, registry.get(RentalMetrics.LATENCY).tag("operation", "add").timer().count());
+        assertEquals(1, registry.get(RentalMetrics.LATENCY).tag("operation", "search").timer().count());
+    }
+
+    @Test
+    void fleetGauges_shouldFollowTheRepository() {
+        // Given
+        CarRentalService carRentalService = service(Set.of(RentalMetrics.FLEET_SIZE, RentalMetrics.FLEET_AVAILABLE));
+
+        // When
+        carRentalService.addCar(new Car("DEF456", "Ford", true));
+        carRentalService.rentCar("ABC123");
+
+        // Then
+        assertEquals(3, registry.get(RentalMetrics.FLEET_SIZE).gauge().value());
+        assertEquals(1, registry.get(RentalMetrics.FLEET_AVAILABLE).gauge().value());
+    }
+
+    @Test
+    void searchCacheCounters_shouldFollowTheCache() {
+        // Given
+        CarRentalService carRentalService = service(Set.of(RentalMetrics.SEARCH_CACHE));
+
+        // When
+        carRentalService.getCarsByModel("Toyota");
+        carRentalService.getCarsByModel("toyota");
+        carRentalService.rentCar("ABC123");
+        carRentalService.getCarsByModel("Toyota");
+
+        // Then
+        assertEquals(1, searchCache("hit"));
+        assertEquals(2, searchCache("miss"));
+        assertEquals(1, searchCache("invalidation"));
+        assertEquals(0, searchCache("eviction"));
+    }
+
+    @Test
+    void meterNotListed_shouldNotBeRegistered() {
+        // Given
+        CarRentalService carRentalService = service(Set.of(RentalMetrics.ADD_CONFLICTS));
+
+        // When
+        carRentalService.rentCar("ABC123");
+
+        // Then
+        assertNull(registry.find(RentalMetrics.LATENCY).meter());
+        assertNull(registry.find(RentalMetrics.RENT_OUTCOMES).meter());
+        assertNotNull(registry.find(RentalMetrics.ADD_CONFLICTS).counter());
+    }
+
+    @Test
+    void unknownMeter_shouldBeRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new RentalMetrics(registry, carRepository, null, Set.of("rental.latencies")));
+    }
+
+    private double searchCache(String result) {
+        return registry.get(RentalMetrics.SEARCH_CACHE).tag("result", result).functionCounter().count();
+    }
+
+    private double outcome(String outcome) {
+        return registry.get(RentalMetrics.RENT_OUTCOMES).tag("outcome", outcome).counter().count();
+    }
+
+    private double returnOutcome(String outcome) {
+        return registry.get(RentalMetrics.RETURN_OUTCOMES).tag("outcome", outcome).counter().count();
+    }
+
+    private CarRentalService service(Set<String> meters) {
+        CarRentalService carRentalService = new CarRentalService();
+        try {
+            set(carRentalService, "carRepository", carRepository);
+            ModelSearchCache modelSearchCache = new ModelSearchCache(carRepository, 10);
+            modelSearchCache.start();
+            set(carRentalService, "modelSearchCache", modelSearchCache);
+            set(carRentalService, "rentalMetrics", new RentalMetrics(registry, carRepository, modelSearchCache,
+                    meters));
+        } catch (Exception e) {
+            fail("Failed to set up test: " + e.getMessage());
+        }
+        return carRentalService;
+    }
+
+    private static void set(Object target, String name, Object value) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
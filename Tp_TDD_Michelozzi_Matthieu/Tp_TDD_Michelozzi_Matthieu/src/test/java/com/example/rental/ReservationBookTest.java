@@ -0,0 +1,96 @@
+package com.example.rental;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ReservationBookTest {
+
+    private static final Instant DAY = Instant.parse("2025-06-01T00:00:00Z");
+
+    private ReservationBook reservationBook;
+
+    @BeforeEach
+    void setUp() {
+        reservationBook = new ReservationBook();
+    }
+
+    @Test
+    void reserve_whenWindowOverlapsAReservation_shouldBeRefused() {
+        // Given
+        reservationBook.reserve("ABC123", hour(10), hour(12));
+
+        // When
+        Optional<Reservation> inside = reservationBook.reserve("ABC123", hour(11), hour(11).plusSeconds(60));
+        Optional<Reservation> across = reservationBook.reserve("ABC123", hour(9), hour(13));
+        Optional<Reservation> tail = reservationBook.reserve("ABC123", hour(11), hour(14));
+        Optional<Reservation> otherCar = reservationBook.reserve("XYZ789", hour(10), hour(12));
+
+        // Then
+        assertFalse(inside.isPresent());
+        assertFalse(across.isPresent());
+        assertFalse(tail.isPresent());
+        assertTrue(otherCar.isPresent());
+    }
+
+    @Test
+    void reserve_whenWindowTouchesAReservation_shouldBeAccepted() {
+        // Given
+        reservationBook.reserve("ABC123", hour(10), hour(12));
+
+        // When
+        Optional<Reservation> before = reservationBook.reserve("ABC123", hour(8), hour(10));
+        Optional<Reservation> after = reservationBook.reserve("ABC123", hour(12), hour(14));
+
+        // Then
+        assertTrue(before.isPresent());
+        assertTrue(after.isPresent());
+        assertEquals(List.of(hour(8), hour(10), hour(12)),
+                reservationBook.findByCar("ABC123").stream().map(Reservation::getStart).toList());
+    }
+
+    @Test
+    void cancel_shouldFreeTheWindow() {
+        // Given
+        Reservation reservation = reservationBook.reserve("ABC123", hour(10), hour(12)).get();
+
+        // When
+        boolean cancelled = reservationBook.cancel(reservation.getId());
+
+        // Then
+        assertTrue(cancelled);
+        assertFalse(reservationBook.cancel(reservation.getId()));
+        assertTrue(reservationBook.isFree("ABC123", hour(10), hour(12)));
+    }
+
+    @Test
+    void isFree_withHundredsOfReservations_shouldOnlyFindTheGaps() {
+        // Given : one hour booked out of every two, for 500 days
+        for (int i = 0; i < 12 * 500; i++) {
+            reservationBook.reserve("ABC123", hour(2 * i), hour(2 * i + 1));
+        }
+
+        // Then
+        assertTrue(reservationBook.isFree("ABC123", hour(2001), hour(2002)));
+        assertFalse(reservationBook.isFree("ABC123", hour(2001), hour(2003)));
+        assertFalse(reservationBook.isFree("ABC123", hour(1999).plusSeconds(1), hour(2000).plusSeconds(1)));
+        assertTrue(reservationBook.isFree("ABC123", hour(-5), hour(0)));
+        assertTrue(reservationBook.isFree("UNKNOWN", hour(0), hour(1)));
+    }
+
+    @Test
+    void reserve_whenEndIsNotAfterStart_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> reservationBook.reserve("ABC123", hour(10), hour(10)));
+    }
+
+    private static Instant hour(int hours) {
+        return DAY.plusSeconds(3600L * hours);
+    }
+}
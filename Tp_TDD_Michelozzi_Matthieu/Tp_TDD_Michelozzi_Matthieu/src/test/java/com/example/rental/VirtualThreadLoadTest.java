@@ -0,0 +1,204 @@
+package com.example.rental;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.example.Tp_TDD_Michelozzi_Matthieu.TpTddMichelozziMatthieuApplication;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Rents one car per connection, with every connection open at the same time, on platform then on virtual threads.
+ * Each rental waits {@value #DOWNSTREAM_MILLIS} ms in a repository listener, standing for the blocking I/O of a
+ * persistence layer or a downstream call, so the platform pool caps throughput at 200 / 0.1 s = 2000 req/s.
+ * <p>
+ * Throughput and p99 latency are logged rather than asserted, since on a machine with few cores both modes are
+ * bound by the CPU long before that cap. The default number of connections keeps the build short; run with
+ * {@code -Dload.connections=10000} (and {@code ulimit -n} above 2 per connection) for the 10k figures.
+ * Wall-clock test, only run with mvn -Pperf test
+ */
+@Tag("perf")
+class VirtualThreadLoadTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadLoadTest.class);
+    private static final int CONNECTIONS = Integer.getInteger("load.connections", 1_000);
+    private static final long DOWNSTREAM_MILLIS = 100;
+
+    @DynamicPropertySource
+    static void connections(DynamicPropertyRegistry registry) {
+        registry.add("server.tomcat.max-connections", () -> CONNECTIONS + 100);
+        registry.add("server.tomcat.accept-count", () -> CONNECTIONS);
+    }
+
+    @Nested
+    @SpringBootTest(classes = TpTddMichelozziMatthieuApplication.class, webEnvironment = WebEnvironment.RANDOM_PORT,
+            properties = "spring.threads.virtual.enabled=false")
+    class PlatformThreads {
+
+        @Autowired
+        private CarRepository carRepository;
+
+        @LocalServerPort
+        private int port;
+
+        @Test
+        void rentCar_withManyConnections_shouldServeEveryRequest() throws Exception {
+            // When
+            LoadResult platform = run(carRepository, port, "PLATFORM-");
+            LOGGER.info("{} connections, platform threads: {} req/s, p99 {} ms", CONNECTIONS,
+                    Math.round(platform.throughput()), platform.percentileMillis(99));
+
+            // Then : every car is rented exactly once
+            assertEquals(CONNECTIONS, platform.rented);
+        }
+    }
+
+    @Nested
+    @SpringBootTest(classes = TpTddMichelozziMatthieuApplication.class, webEnvironment = WebEnvironment.RANDOM_PORT,
+            properties = "spring.threads.virtual.enabled=true")
+    class VirtualThreads {
+
+        @Autowired
+        private CarRepository carRepository;
+
+        @LocalServerPort
+        private int port;
+
+        @Test
+        void rentCar_withManyConnections_shouldServeEveryRequestWithoutPinning() throws Exception {
+            // When
+            LoadResult virtual = run(carRepository, port, "VIRTUAL-");
+            LOGGER.info("{} connections, virtual threads: {} req/s, p99 {} ms, {} pinned events", CONNECTIONS,
+                    Math.round(virtual.throughput()), virtual.percentileMillis(99), virtual.pinnedInRental);
+
+            // Then : every car is rented exactly once, and no monitor of ours holds a carrier thread while blocking
+            assertEquals(CONNECTIONS, virtual.rented);
+            assertEquals(0, virtual.pinnedInRental, "a virtual thread was pinned in com.example.rental");
+        }
+    }
+
+    private LoadResult run(CarRepository carRepository, int port, String prefix) throws Exception {
+        DownstreamCall downstreamCall = new DownstreamCall();
+        try (RecordingStream pinned = new RecordingStream();
+                ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+                HttpClient httpClient = HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_1_1)
+                        .executor(clients)
+                        .connectTimeout(Duration.ofSeconds(60))
+                        .build()) {
+            List<Car> cars = new ArrayList<>();
+            for (int i = 0; i < CONNECTIONS; i++) {
+                cars.add(new Car(prefix + i, "Model" + (i % 10), true));
+            }
+            carRepository.addCars(cars);
+            carRepository.addListener(downstreamCall);
+
+            LoadResult result = new LoadResult();
+            pinned.enable("jdk.VirtualThreadPinned").withStackTrace().withThreshold(Duration.ZERO);
+            pinned.onEvent("jdk.VirtualThreadPinned", event -> {
+                if (isInRental(event)) {
+                    result.pinnedInRental++;
+                }
+            });
+            pinned.startAsync();
+
+            ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < CONNECTIONS; i++) {
+                long sent = System.nanoTime();
+                HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/cars/rent/"
+                        + prefix + i))
+                        .POST(HttpRequest.BodyPublishers.noBody())
+                        .timeout(Duration.ofSeconds(120))
+                        .build();
+                responses.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                        .whenComplete((response, error) -> latencies.add(System.nanoTime() - sent)));
+            }
+            for (CompletableFuture<HttpResponse<String>> response : responses) {
+                if ("true".equals(response.get(120, TimeUnit.SECONDS).body())) {
+                    result.rented++;
+                }
+            }
+            result.elapsedNanos = System.nanoTime() - start;
+            result.latencies = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            pinned.stop();
+            return result;
+        } finally {
+            carRepository.removeListener(downstreamCall);
+        }
+    }
+
+    private static boolean isInRental(RecordedEvent event) {
+        if (event.getStackTrace() == null) {
+            return false;
+        }
+        for (RecordedFrame frame : event.getStackTrace().getFrames()) {
+            if (frame.getMethod().getType().getName().startsWith("com.example.rental")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Blocks the renting thread like a remote call would
+     */
+    private static class DownstreamCall implements CarRepositoryListener {
+        @Override
+        public void carsAdded(List<Car> cars) {
+            // Only rentals are measured
+        }
+
+        @Override
+        public void carUpdated(Car car) {
+            try {
+                Thread.sleep(DOWNSTREAM_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class LoadResult {
+        private int rented;
+        private int pinnedInRental;
+        private long elapsedNanos;
+        private long[] latencies;
+
+        double throughput() {
+            return rented * 1e9 / elapsedNanos;
+        }
+
+        long percentileMillis(int percentile) {
+            int index = Math.min(latencies.length - 1, latencies.length * percentile / 100);
+            return TimeUnit.NANOSECONDS.toMillis(Arrays.stream(latencies).skip(index).findFirst().orElse(0));
+        }
+    }
+}
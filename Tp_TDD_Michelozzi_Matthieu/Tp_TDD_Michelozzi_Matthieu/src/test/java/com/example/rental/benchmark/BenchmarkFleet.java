@@ -0,0 +1,74 @@
+package com.example.rental.benchmark;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.rental.Car;
+import com.example.rental.CarRentalService;
+import com.example.rental.CarRepository;
+import com.example.rental.CarRepository.Storage;
+import com.example.rental.ModelSearchCache;
+
+/**
+ * Builds the fleets and services measured by the benchmarks, wired as Spring would
+ */
+final class BenchmarkFleet {
+
+    static final int MODELS = 50;
+
+    private BenchmarkFleet() {
+    }
+
+    static CarRepository newRepository(int fleetSize) {
+        return fill(new CarRepository(), fleetSize);
+    }
+
+    static CarRepository newRepository(int fleetSize, int shards) {
+        return fill(new CarRepository(shards), fleetSize);
+    }
+
+    static CarRepository newRepository(int fleetSize, Storage storage) {
+        return fill(new CarRepository(CarRepository.DEFAULT_SHARDS, storage), fleetSize);
+    }
+
+    private static CarRepository fill(CarRepository carRepository, int fleetSize) {
+        List<Car> batch = new ArrayList<>();
+        for (int i = 0; i < fleetSize; i++) {
+            batch.add(new Car(registration(i), model(i), true));
+            if (batch.size() == 1000) {
+                carRepository.addCars(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        carRepository.addCars(batch);
+        return carRepository;
+    }
+
+    static CarRentalService newService(CarRepository carRepository) {
+        ModelSearchCache modelSearchCache = new ModelSearchCache(carRepository, 1000);
+        modelSearchCache.start();
+        CarRentalService carRentalService = new CarRentalService();
+        inject(carRentalService, "carRepository", carRepository);
+        inject(carRentalService, "modelSearchCache", modelSearchCache);
+        return carRentalService;
+    }
+
+    static String registration(int i) {
+        return "REG-" + i;
+    }
+
+    static String model(int i) {
+        return "Model" + (i % MODELS);
+    }
+
+    private static void inject(Object target, String name, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to set " + name, e);
+        }
+    }
+}
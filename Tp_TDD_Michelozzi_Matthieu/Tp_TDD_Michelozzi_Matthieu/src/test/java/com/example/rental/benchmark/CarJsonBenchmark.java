@@ -0,0 +1,114 @@
+package com.example.rental.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.example.rental.Car;
+import com.example.rental.CarListJsonConverter;
+import com.example.rental.CarRepository;
+import com.example.rental.CarRepository.Storage;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * The JSON body of GET /cars, written by Jackson as Spring's default converter does and by
+ * {@link CarListJsonConverter}. Both write to an in-memory stream, so only the encoding is measured.
+ * With the columnar storage each invocation writes new cars, as each request does
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CarJsonBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    public int fleetSize;
+
+    @Param({ "OBJECTS", "COLUMNAR" })
+    public Storage storage;
+
+    private CarRepository carRepository;
+    private List<Car> cars;
+    private ObjectWriter jackson;
+    private CarListJsonConverter converter;
+    /** Copies the bytes into a buffer reused over and over like a response buffer, and ignores close */
+    private final OutputStream out = new OutputStream() {
+        private final byte[] buffer = new byte[8192];
+        private int position;
+
+        @Override
+        public void write(int b) {
+            if (position == buffer.length) {
+                position = 0;
+            }
+            buffer[position++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            while (len > 0) {
+                if (position == buffer.length) {
+                    position = 0;
+                }
+                int chunk = Math.min(len, buffer.length - position);
+                System.arraycopy(b, off, buffer, position, chunk);
+                position += chunk;
+                off += chunk;
+                len -= chunk;
+            }
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        carRepository = BenchmarkFleet.newRepository(fleetSize, storage);
+        cars = carRepository.getAllCars();
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        jackson = objectMapper.writerFor(new TypeReference<List<Car>>() {
+        });
+        converter = new CarListJsonConverter(objectMapper);
+    }
+
+    /**
+     * Outside the measurement
+     */
+    @Setup(Level.Invocation)
+    public void readCars() {
+        if (storage == Storage.COLUMNAR) {
+            cars = carRepository.getAllCars();
+        }
+    }
+
+    @Benchmark
+    public void jackson() throws IOException {
+        jackson.writeValue(out, cars);
+    }
+
+    /**
+     * With the object storage the fragments are encoded by the first invocation, during the warmup.
+     * With the columnar storage every invocation encodes them again, which is why the converter steps aside then
+     */
+    @Benchmark
+    public void preEncoded() throws IOException {
+        converter.write(cars, out);
+    }
+}
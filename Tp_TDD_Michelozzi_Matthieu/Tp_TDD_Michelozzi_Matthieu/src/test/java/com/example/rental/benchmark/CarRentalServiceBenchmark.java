@@ -0,0 +1,100 @@
+package com.example.rental.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.rental.Car;
+import com.example.rental.CarRentalService;
+
+/**
+ * Hot paths of {@link CarRentalService}, wired with its model search cache as in the application.
+ * rentCar and returnCar run side by side on the same cars, so each mostly finds the car in the state it expects
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CarRentalServiceBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Fleet {
+        @Param({ "1000", "100000", "1000000" })
+        public int fleetSize;
+
+        CarRentalService carRentalService;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            carRentalService = BenchmarkFleet.newService(BenchmarkFleet.newRepository(fleetSize));
+        }
+    }
+
+    /**
+     * Rebuilt before each iteration, so the cars added by addCar do not pile up across iterations
+     */
+    @State(Scope.Benchmark)
+    public static class GrowingFleet {
+        @Param({ "1000", "100000", "1000000" })
+        public int fleetSize;
+
+        CarRentalService carRentalService;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            carRentalService = BenchmarkFleet.newService(BenchmarkFleet.newRepository(fleetSize));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class NewCars {
+        private static final AtomicInteger THREADS = new AtomicInteger();
+
+        private final int thread = THREADS.incrementAndGet();
+        private long next;
+
+        Car next() {
+            return new Car("NEW-" + thread + "-" + next++, BenchmarkFleet.model((int) next), true);
+        }
+    }
+
+    @Benchmark
+    @Group("rental")
+    @GroupThreads(1)
+    public boolean rentCar(Fleet fleet, FleetCursor cursor) {
+        return fleet.carRentalService.rentCar(BenchmarkFleet.registration(cursor.next(fleet.fleetSize)));
+    }
+
+    @Benchmark
+    @Group("rental")
+    @GroupThreads(1)
+    public void returnCar(Fleet fleet, FleetCursor cursor) {
+        fleet.carRentalService.returnCar(BenchmarkFleet.registration(cursor.next(fleet.fleetSize)));
+    }
+
+    @Benchmark
+    public boolean addCar(GrowingFleet fleet, NewCars newCars) {
+        return fleet.carRentalService.addCar(newCars.next());
+    }
+
+    @Benchmark
+    public List<Car> getCarsByModel(Fleet fleet, FleetCursor cursor) {
+        return fleet.carRentalService.getCarsByModel(BenchmarkFleet.model(cursor.next(fleet.fleetSize)));
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.rental.benchmark;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.rental.Car;
+import com.example.rental.CarRepository;
+
+/**
+ * Hot paths of {@link CarRepository}. getAllCars measures the shared read view; the rebuild after a write
+ * is measured by getAllCarsAfterUpdate
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CarRepositoryBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    public int fleetSize;
+
+    private CarRepository carRepository;
+    private Car[] cars;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        carRepository = BenchmarkFleet.newRepository(fleetSize);
+        cars = carRepository.getAllCars().toArray(new Car[0]);
+    }
+
+    @Benchmark
+    public Optional<Car> findByRegistrationNumber(FleetCursor cursor) {
+        return carRepository.findByRegistrationNumber(BenchmarkFleet.registration(cursor.next(fleetSize)));
+    }
+
+    @Benchmark
+    public void updateCar(FleetCursor cursor) {
+        carRepository.updateCar(cars[cursor.next(fleetSize)]);
+    }
+
+    @Benchmark
+    public List<Car> getAllCars() {
+        return carRepository.getAllCars();
+    }
+
+    @Benchmark
+    public List<Car> getAllCarsAfterUpdate(FleetCursor cursor) {
+        carRepository.updateCar(cars[cursor.next(fleetSize)]);
+        return carRepository.getAllCars();
+    }
+}
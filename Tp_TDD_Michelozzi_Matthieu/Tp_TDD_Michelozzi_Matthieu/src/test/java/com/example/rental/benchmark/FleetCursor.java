@@ -0,0 +1,20 @@
+package com.example.rental.benchmark;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Walks the fleet of one benchmark thread with a large prime stride, so successive operations touch distant cars
+ */
+@State(Scope.Thread)
+public class FleetCursor {
+
+    private static final long STRIDE = 7919;
+
+    private long position;
+
+    int next(int fleetSize) {
+        position++;
+        return (int) ((position * STRIDE) % fleetSize);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.rental.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+import com.example.rental.Car;
+import com.example.rental.CarRepository;
+import com.example.rental.CarRepository.Storage;
+
+/**
+ * Prints the heap taken per car by each storage of {@link CarRepository}, measured as the heap still in use after
+ * a full GC once the fleet is loaded. Each car gets its own model string, as when read from JSON.
+ * Run with {@code mvn -Pbenchmark -DskipTests verify -Dbenchmark.main=com.example.rental.benchmark.FleetFootprint}
+ * and {@code -Dfootprint.cars} (1000000)
+ */
+public final class FleetFootprint {
+
+    private FleetFootprint() {
+    }
+
+    public static void main(String[] args) {
+        int cars = Integer.getInteger("footprint.cars", 1_000_000);
+        for (Storage storage : Storage.values()) {
+            long before = usedHeap();
+            CarRepository carRepository = new CarRepository(CarRepository.DEFAULT_SHARDS, storage);
+            for (int i = 0; i < cars; i++) {
+                carRepository.addCar(new Car(BenchmarkFleet.registration(i),
+                        new String(BenchmarkFleet.model(i).toCharArray()), i % 3 != 0));
+            }
+            // Builds the indexes served lazily
+            carRepository.findPage(null, 1, null, false, null);
+            long used = usedHeap() - before;
+            System.out.printf("%-8s %,d cars: %,d bytes, %.1f bytes per car%n", storage, carRepository.size(), used,
+                    (double) used / cars);
+        }
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.rental.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks once per thread count, reporting throughput, average time and allocation rate (gc profiler).
+ * Results are also written to target/jmh-result-&lt;threads&gt;t.json. Run with {@code mvn -Pbenchmark -DskipTests verify}
+ */
+public final class RentalBenchmarks {
+
+    private RentalBenchmarks() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        String[] fleetSizes = System.getProperty("jmh.fleetSizes", "1000,100000,1000000").split(",");
+        for (String threads : System.getProperty("jmh.threads", "1,4").split(",")) {
+            Options options = new OptionsBuilder()
+                    .include(System.getProperty("jmh.include", ".*Benchmark.*"))
+                    .param("fleetSize", fleetSizes)
+                    .threads(Integer.parseInt(threads.trim()))
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("target/jmh-result-" + threads.trim() + "t.json")
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.rental.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.rental.Car;
+import com.example.rental.CarRepository;
+
+/**
+ * Fleet-wide scans of a sharded {@link CarRepository} on 1 to 32 cores. The scans run inside a fork-join pool of
+ * the given parallelism, which their parallel streams and sorts then use instead of the common pool.
+ * Run with {@code -Djmh.include=ShardedScanBenchmark -Djmh.threads=1}; the cores beyond those of the machine
+ * only add scheduling overhead
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+// Lets the sorts split their work whatever the number of cores of the machine
+@Fork(value = 1, jvmArgsAppend = "-Djava.util.concurrent.ForkJoinPool.common.parallelism=32")
+@State(Scope.Benchmark)
+public class ShardedScanBenchmark {
+
+    @Param({ "100000", "1000000" })
+    public int fleetSize;
+
+    @Param({ "1", "16" })
+    public int shards;
+
+    @Param({ "1", "2", "4", "8", "16", "32" })
+    public int cores;
+
+    private CarRepository carRepository;
+    private Car[] cars;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        carRepository = BenchmarkFleet.newRepository(fleetSize, shards);
+        cars = carRepository.getAllCars().toArray(new Car[0]);
+        pool = new ForkJoinPool(cores);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * A write first, so the shared view is rebuilt by a full scan
+     */
+    @Benchmark
+    public List<Car> getAllCarsAfterUpdate(FleetCursor cursor) {
+        carRepository.updateCar(cars[cursor.next(fleetSize)]);
+        return pool.submit(carRepository::getAllCars).join();
+    }
+
+    @Benchmark
+    public List<Car> findByModelPrefix(FleetCursor cursor) {
+        return pool.submit(() -> carRepository.findByModelPrefix(BenchmarkFleet.model(cursor.next(fleetSize))))
+                .join();
+    }
+
+    @Benchmark
+    public int countAvailable() {
+        return pool.submit(carRepository::countAvailable).join();
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.rental.benchmark;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.rental.Car;
+import com.example.rental.CarRepository;
+
+/**
+ * Point operations on a single shard against a sharded {@link CarRepository}, to compare how their throughput
+ * scales with the writing threads. Run with {@code -Djmh.include=ShardedWriteBenchmark -Djmh.threads=1,2,4,8,16,32}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShardedWriteBenchmark {
+
+    @Param({ "100000" })
+    public int fleetSize;
+
+    @Param({ "1", "16", "64" })
+    public int shards;
+
+    private CarRepository carRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        carRepository = BenchmarkFleet.newRepository(fleetSize, shards);
+    }
+
+    /**
+     * Rents then returns a car, two writes that only fail when another thread holds the same car
+     */
+    @Benchmark
+    public boolean rentAndReturn(FleetCursor cursor) {
+        String registrationNumber = BenchmarkFleet.registration(cursor.next(fleetSize));
+        return carRepository.compareAndSetAvailable(registrationNumber, true, false)
+                && carRepository.compareAndSetAvailable(registrationNumber, false, true);
+    }
+
+    @Benchmark
+    public Optional<Car> findByRegistrationNumber(FleetCursor cursor) {
+        return carRepository.findByRegistrationNumber(BenchmarkFleet.registration(cursor.next(fleetSize)));
+    }
+}